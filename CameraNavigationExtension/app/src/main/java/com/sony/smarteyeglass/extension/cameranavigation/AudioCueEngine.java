@@ -0,0 +1,87 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.util.Log;
+
+// Plays the beeps that tell the user how dangerous the way ahead is. Every cue (one per danger level) is rendered once,
+// when the engine is created, into its own static AudioTrack, which the audio system keeps for the life of the engine.
+// Playing a cue only rewinds and starts its track, so it sounds right away and nothing is computed or allocated per
+// beep. Use from a single thread (ImageManager's beep thread).
+public class AudioCueEngine {
+
+    private static final int SAMPLE_RATE = 44100;
+
+    // Beep length, and how long it takes to fade in and out (so it starts and stops without a click)
+    private static final double CUE_DURATION = 0.125; // TODO: Adjust frequency and duration
+    private static final double FADE_DURATION = 0.005;
+
+    // Pitch of the beep for each danger level (0 = clear, 1 = careful, 2 = dangerous): higher as it gets more dangerous
+    private static final int[] CUE_FREQUENCIES = {1000, 1250, 1500};
+
+    // One track per danger level, null if it couldn't be created
+    private final AudioTrack[] mTracks = new AudioTrack[CUE_FREQUENCIES.length];
+
+    public AudioCueEngine() {
+        int samples = (int) (CUE_DURATION * SAMPLE_RATE);
+        short[] pcm = new short[samples];
+        for (int level = 0; level < CUE_FREQUENCIES.length; level++) {
+            render(CUE_FREQUENCIES[level], pcm);
+            mTracks[level] = createTrack(pcm);
+        }
+    }
+
+    // Plays the cue for dangerLevel, cutting short the one before if it is still playing
+    public void play(int dangerLevel) {
+        AudioTrack track = mTracks[Math.max(0, Math.min(dangerLevel, mTracks.length - 1))];
+        if (track == null) {
+            return;
+        }
+        for (AudioTrack other : mTracks) {
+            if (other != null && other != track && other.getPlayState() == AudioTrack.PLAYSTATE_PLAYING) {
+                other.stop();
+            }
+        }
+        if (track.getPlayState() != AudioTrack.PLAYSTATE_STOPPED) {
+            track.stop();
+        }
+        // Rewinds to the start of the cue
+        track.reloadStaticData();
+        track.play();
+    }
+
+    // Frees the tracks. The engine must not be used afterwards
+    public void release() {
+        for (int i = 0; i < mTracks.length; i++) {
+            if (mTracks[i] != null) {
+                mTracks[i].release();
+                mTracks[i] = null;
+            }
+        }
+    }
+
+    // Sine wave at frequency, faded in and out, at full scale (the tracks' volume brings it down)
+    private static void render(int frequency, short[] pcm) {
+        int fadeSamples = (int) (FADE_DURATION * SAMPLE_RATE);
+        for (int i = 0; i < pcm.length; i++) {
+            double envelope = Math.min(1.0, Math.min(i, pcm.length - 1 - i) / (double) fadeSamples);
+            double sample = Math.sin(2.0 * Math.PI * i * frequency / SAMPLE_RATE) * envelope;
+            pcm[i] = (short) (sample * Short.MAX_VALUE);
+        }
+    }
+
+    private static AudioTrack createTrack(short[] pcm) {
+        AudioTrack track = new AudioTrack(AudioManager.STREAM_MUSIC, SAMPLE_RATE,
+                AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT,
+                pcm.length * 2, AudioTrack.MODE_STATIC);
+        // A static track has to be given its data before it is ready to play
+        if (track.write(pcm, 0, pcm.length) != pcm.length || track.getState() != AudioTrack.STATE_INITIALIZED) {
+            Log.e(Constants.AUDIO_CUE_ENGINE_TAG, "Could not create audio cue track (state " + track.getState() + ")");
+            track.release();
+            return null;
+        }
+        track.setVolume(AudioTrack.getMaxVolume() / 8);
+        return track;
+    }
+}
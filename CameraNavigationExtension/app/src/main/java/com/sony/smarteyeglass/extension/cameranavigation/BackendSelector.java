@@ -0,0 +1,164 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.os.Build;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.util.Log;
+import com.sony.smarteyeglass.extension.cameranavigation.tflite.Classifier;
+import com.sony.smarteyeglass.extension.cameranavigation.tflite.PooledClassifier;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// Picks the inference backend (number of CPU threads per interpreter, NNAPI on/off) for this device. The first
+// time the app starts it times a few detections on a bundled calibration image for each candidate configuration
+// and stores the fastest one in SharedPreferences; on later starts the stored configuration is applied straight
+// away. The benchmark is run again when the model, the OS build or the number of cores changes. Only the pool's first
+// interpreter is timed (the others are identical), so the numbers match what a single worker will see. Call it at
+// the priority the detector threads run at.
+public class BackendSelector {
+
+    // Image the benchmark runs detection on (bundled in assets, already at the detector's input size)
+    private static final String CALIBRATION_IMAGE = "calibration.jpg";
+
+    // Untimed runs before each configuration is measured (lets the interpreter allocate and the CPU clock up)
+    private static final int WARM_UP_RUNS = 2;
+
+    // Timed runs per configuration; the median is used so one hiccup doesn't decide the winner
+    private static final int TIMED_RUNS = 5;
+
+    // Stop trying further configurations once the benchmark has taken this long, so startup stays quick
+    private static final long MAX_BENCHMARK_MS = 8000;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+
+    // Identifies what the stored result was measured with
+    private final String fingerprint;
+
+    // Largest CPU thread count to try
+    private final int maxThreads;
+
+    // The chosen configuration
+    private int numThreads;
+    private boolean useNNAPI;
+
+    public BackendSelector(Context context, String modelFile, int maxThreads) {
+        this.context = context;
+        this.prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        this.maxThreads = Math.max(1, maxThreads);
+        this.fingerprint = modelFile + "|" + Build.FINGERPRINT + "|" + this.maxThreads;
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    public boolean getUseNNAPI() {
+        return useNNAPI;
+    }
+
+    // Applies the stored configuration to every interpreter in classifier, or benchmarks the candidates (which can
+    // take a few seconds, so don't call this on the UI thread) and stores the fastest one. Nothing else may use
+    // classifier meanwhile.
+    public void apply(PooledClassifier classifier, int inputSize) {
+        if (fingerprint.equals(prefs.getString(context.getString(R.string.preference_key_backend_fingerprint), null))) {
+            numThreads = prefs.getInt(context.getString(R.string.preference_key_backend_threads), maxThreads);
+            useNNAPI = prefs.getBoolean(context.getString(R.string.preference_key_backend_nnapi), false);
+            Log.d(Constants.BACKEND_SELECTOR_TAG, "Using stored backend: " + describe(numThreads, useNNAPI));
+        } else {
+            benchmark(classifier.getInterpreter(0), inputSize);
+            prefs.edit()
+                    .putString(context.getString(R.string.preference_key_backend_fingerprint), fingerprint)
+                    .putInt(context.getString(R.string.preference_key_backend_threads), numThreads)
+                    .putBoolean(context.getString(R.string.preference_key_backend_nnapi), useNNAPI)
+                    .apply();
+        }
+        // Interpreters whose options change are rebuilt, so the benchmarked one doesn't keep the last candidate's
+        // NNAPI delegate
+        classifier.setUseNNAPI(useNNAPI);
+        classifier.setNumThreads(numThreads);
+    }
+
+    private void benchmark(Classifier classifier, int inputSize) {
+        Bitmap image = loadCalibrationImage(inputSize);
+
+        // CPU with 1..maxThreads threads, then NNAPI (which ignores the thread count)
+        long bestTime = Long.MAX_VALUE;
+        numThreads = maxThreads;
+        useNNAPI = false;
+        long start = SystemClock.elapsedRealtime();
+        for (int candidate = 0; candidate <= maxThreads; candidate++) {
+            boolean nnapi = candidate == maxThreads;
+            int threads = nnapi ? maxThreads : candidate + 1;
+            if (SystemClock.elapsedRealtime() - start > MAX_BENCHMARK_MS) {
+                Log.d(Constants.BACKEND_SELECTOR_TAG, "Benchmark time budget used up, skipping remaining configurations");
+                break;
+            }
+            long time = time(classifier, image, threads, nnapi);
+            Log.d(Constants.BACKEND_SELECTOR_TAG, describe(threads, nnapi) + ": "
+                    + (time == Long.MAX_VALUE ? "failed" : (time / 1000) + "us"));
+            if (time < bestTime) {
+                bestTime = time;
+                numThreads = threads;
+                useNNAPI = nnapi;
+            }
+        }
+        image.recycle();
+        Log.d(Constants.BACKEND_SELECTOR_TAG, "Selected backend: " + describe(numThreads, useNNAPI));
+    }
+
+    // Median detection time in nanoseconds with the given configuration, or Long.MAX_VALUE if it doesn't work.
+    // Changing the configuration rebuilds classifier's interpreter, so every candidate starts from a clean one
+    private long time(Classifier classifier, Bitmap image, int threads, boolean nnapi) {
+        long[] times = new long[TIMED_RUNS];
+        try {
+            classifier.setUseNNAPI(nnapi);
+            classifier.setNumThreads(threads);
+            // A minimum confidence of 1 skips building results, so it is (almost) only inference that is timed
+            for (int i = 0; i < WARM_UP_RUNS; i++) {
+                classifier.recognizeImage(image, 1f);
+            }
+            for (int i = 0; i < TIMED_RUNS; i++) {
+                long startTime = System.nanoTime();
+                classifier.recognizeImage(image, 1f);
+                times[i] = System.nanoTime() - startTime;
+            }
+        } catch (RuntimeException e) {
+            // e.g. NNAPI not supported for this model on this device
+            Log.e(Constants.BACKEND_SELECTOR_TAG, describe(threads, nnapi) + " failed: " + e.toString());
+            return Long.MAX_VALUE;
+        }
+        Arrays.sort(times);
+        return times[TIMED_RUNS / 2];
+    }
+
+    private Bitmap loadCalibrationImage(int inputSize) {
+        Bitmap decoded = null;
+        try (InputStream in = context.getAssets().open(CALIBRATION_IMAGE)) {
+            decoded = BitmapFactory.decodeStream(in);
+        } catch (IOException e) {
+            Log.e(Constants.BACKEND_SELECTOR_TAG, "Unable to load calibration image: " + e.toString());
+        }
+        if (decoded == null) {
+            // Timing barely depends on the picture, so a plain one will do
+            decoded = Bitmap.createBitmap(inputSize, inputSize, Bitmap.Config.ARGB_8888);
+            decoded.eraseColor(Color.GRAY);
+        }
+        if (decoded.getWidth() == inputSize && decoded.getHeight() == inputSize) {
+            return decoded;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, inputSize, inputSize, true);
+        decoded.recycle();
+        return scaled;
+    }
+
+    private static String describe(int threads, boolean nnapi) {
+        return nnapi ? "NNAPI" : "CPU x" + threads;
+    }
+}
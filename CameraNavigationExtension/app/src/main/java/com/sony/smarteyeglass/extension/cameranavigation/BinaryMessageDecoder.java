@@ -0,0 +1,113 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+// Decoder for ServerProtocol's binary messages. Results are read straight out of the buffer into pooled
+// ServerResults; the only allocation is the label table, which the server sends once per connection.
+public class BinaryMessageDecoder extends ServerMessageDecoder {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Label names from the last TYPE_LABELS message, indexed by a record's label id
+    private String[] mLabels = new String[0];
+
+    @Override
+    protected void decodeMessages(ByteBuffer buffer, Listener listener) throws IOException {
+        while (buffer.remaining() >= ServerProtocol.HEADER_SIZE) {
+            int start = buffer.position();
+            int version = buffer.get(start);
+            byte type = buffer.get(start + 1);
+            int length = buffer.getInt(start + 4);
+            if (version != ServerProtocol.BINARY_VERSION || length < 0 || length > ServerProtocol.MAX_PAYLOAD_SIZE) {
+                throw new ProtocolException("Bad message header: version " + version + ", type " + type + ", length " + length);
+            }
+            if (length > buffer.capacity() - ServerProtocol.HEADER_SIZE) {
+                throw new ProtocolException("Message of " + length + " bytes doesn't fit in the receive buffer");
+            }
+            if (buffer.remaining() < ServerProtocol.HEADER_SIZE + length) {
+                // Wait for the rest of the message
+                return;
+            }
+            int payloadStart = start + ServerProtocol.HEADER_SIZE;
+            int end = payloadStart + length;
+            buffer.position(payloadStart);
+            switch (type) {
+                case ServerProtocol.TYPE_SIZE_ACK:
+                    if (length < 4) {
+                        throw new ProtocolException("Size acknowledgement of " + length + " bytes");
+                    }
+                    listener.onSizeAck(buffer.getInt());
+                    break;
+                case ServerProtocol.TYPE_READY:
+                    listener.onReady();
+                    break;
+                case ServerProtocol.TYPE_RESULT:
+                    listener.onResult(readResult(buffer, length));
+                    break;
+                case ServerProtocol.TYPE_LABELS:
+                    mLabels = readLabels(buffer, end);
+                    break;
+                case ServerProtocol.TYPE_CLOSED:
+                    listener.onClosed();
+                    break;
+                default:
+                    // Unknown message from a newer server; skip it
+                    break;
+            }
+            buffer.position(end);
+        }
+    }
+
+    @Override
+    public void reset() {
+        mLabels = new String[0];
+    }
+
+    private ServerResult readResult(ByteBuffer buffer, int length) throws ProtocolException {
+        if (length < ServerProtocol.RESULT_HEADER_SIZE) {
+            throw new ProtocolException("Result of " + length + " bytes");
+        }
+        int frameId = buffer.getInt();
+        int dangerLevel = buffer.get();
+        int side = buffer.get();
+        int count = buffer.getShort() & 0xFFFF;
+        if (length != ServerProtocol.RESULT_HEADER_SIZE + count * ServerProtocol.RESULT_RECORD_SIZE) {
+            throw new ProtocolException("Result of " + length + " bytes can't hold " + count + " detections");
+        }
+
+        ServerResult result = ServerResult.obtain();
+        result.set(frameId, dangerLevel, side >= 0 && side < ServerProtocol.SIDES.length ? ServerProtocol.SIDES[side] : "NONE");
+        for (int i = 0; i < count; i++) {
+            int labelId = buffer.getShort() & 0xFFFF;
+            buffer.getShort();
+            float confidence = buffer.getFloat();
+            float xCenter = buffer.getFloat();
+            float yCenter = buffer.getFloat();
+            result.addDetection().set(labelId < mLabels.length ? mLabels[labelId] : "???", confidence, xCenter, yCenter);
+        }
+        return result;
+    }
+
+    private static String[] readLabels(ByteBuffer buffer, int end) throws ProtocolException {
+        if (end - buffer.position() < 2) {
+            throw new ProtocolException("Truncated label table");
+        }
+        int count = buffer.getShort() & 0xFFFF;
+        String[] labels = new String[count];
+        for (int i = 0; i < count; i++) {
+            if (end - buffer.position() < 2) {
+                throw new ProtocolException("Truncated label table");
+            }
+            int length = buffer.getShort() & 0xFFFF;
+            if (end - buffer.position() < length) {
+                throw new ProtocolException("Truncated label table");
+            }
+            labels[i] = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+            buffer.position(buffer.position() + length);
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,41 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.view.View;
+import com.sony.smarteyeglass.extension.cameranavigation.tflite.BoxRenderer;
+import com.sony.smarteyeglass.extension.cameranavigation.tflite.OverlayBoxes;
+
+// Overlay that draws the bounding boxes over the camera image in ImageResultActivity. It is only given the boxes'
+// geometry and draws them straight onto its own canvas on the UI thread, so there is no bitmap to allocate (or fill
+// and upload) for every frame
+public class BoundingBoxView extends View {
+
+    private final BoxRenderer mRenderer;
+
+    // Boxes being shown, or null for none. Recycled when replaced
+    private OverlayBoxes mBoxes;
+
+    public BoundingBoxView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        mRenderer = new BoxRenderer(context);
+    }
+
+    // Shows boxes (null clears them), which this view now owns. Call on the UI thread
+    public void setBoxes(OverlayBoxes boxes) {
+        if (mBoxes != null) {
+            mBoxes.recycle();
+        }
+        mBoxes = boxes;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mBoxes != null) {
+            mRenderer.draw(canvas, mBoxes);
+        }
+    }
+}
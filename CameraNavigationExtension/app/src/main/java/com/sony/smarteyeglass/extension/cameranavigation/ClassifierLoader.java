@@ -0,0 +1,129 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import com.sony.smarteyeglass.extension.cameranavigation.tflite.PooledClassifier;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+// Loads the object detector in the background so the extension can start (and the host app isn't blocked) while
+// the model is memory-mapped, the labels are read, the interpreters are built, the inference backend is chosen
+// and one warm-up inference has run on each interpreter. Until all of that is done getIfReady() returns null and
+// callers are expected to send frames to the server or drop them.
+public class ClassifierLoader {
+
+    private final Context context;
+    private final String modelFile;
+    private final String labelsFile;
+    private final int inputSize;
+    private final boolean quantized;
+    private final int numInterpreters;
+    private final float minimumConfidence;
+    private final PooledClassifier.Listener listener;
+
+    private final FutureTask<PooledClassifier> mTask = new FutureTask<>(new Callable<PooledClassifier>() {
+        @Override
+        public PooledClassifier call() throws Exception {
+            try {
+                return load();
+            } catch (Exception e) {
+                Log.e(Constants.CLASSIFIER_LOADER_TAG, "Unable to create Classifier. Error: \n" + e.toString());
+                throw e;
+            }
+        }
+    });
+
+    // Guards closed against a load finishing while close() runs
+    private final Object mLock = new Object();
+    private boolean closed = false;
+
+    // The loaded classifier once the task has finished successfully (read on any thread)
+    private volatile PooledClassifier mClassifier;
+
+    public ClassifierLoader(Context context, String modelFile, String labelsFile, int inputSize, boolean quantized,
+                            int numInterpreters, float minimumConfidence, PooledClassifier.Listener listener) {
+        this.context = context;
+        this.modelFile = modelFile;
+        this.labelsFile = labelsFile;
+        this.inputSize = inputSize;
+        this.quantized = quantized;
+        this.numInterpreters = numInterpreters;
+        this.minimumConfidence = minimumConfidence;
+        this.listener = listener;
+    }
+
+    // Starts loading on a background thread and returns immediately. The future completes with the ready classifier,
+    // or fails with whatever stopped it from loading
+    public Future<PooledClassifier> start() {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                mTask.run();
+            }
+        }, "ClassifierLoader");
+        thread.start();
+        return mTask;
+    }
+
+    // The classifier if it has finished loading and warming up, otherwise null. Never blocks
+    public PooledClassifier getIfReady() {
+        return mClassifier;
+    }
+
+    // Closes the classifier, now if it is ready or as soon as it finishes loading otherwise
+    public void close() {
+        PooledClassifier classifier;
+        synchronized (mLock) {
+            closed = true;
+            classifier = mClassifier;
+            mClassifier = null;
+        }
+        if (classifier != null) {
+            classifier.close();
+        }
+    }
+
+    private PooledClassifier load() throws Exception {
+        long startTime = SystemClock.elapsedRealtime();
+        PooledClassifier classifier = PooledClassifier.create(context.getAssets(), modelFile, labelsFile, inputSize,
+                quantized, numInterpreters, minimumConfidence, listener);
+        // The benchmark has to see the CPU the way the detector threads will, and the interpreters' own threads are
+        // started on this thread and inherit its priority, so leave the background for the rest of the setup
+        Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+        try {
+            // Choose the fastest backend for this device (benchmarked on first start, read from preferences after
+            // that). The cores available on device are split between the pool's interpreters
+            new BackendSelector(context, modelFile, Runtime.getRuntime().availableProcessors() / numInterpreters)
+                    .apply(classifier, inputSize);
+
+            // The first inference on an interpreter allocates its tensors and is much slower than the rest, so run
+            // one per interpreter now rather than on the user's first frame
+            Bitmap warmUpImage = Bitmap.createBitmap(inputSize, inputSize, Bitmap.Config.ARGB_8888);
+            for (int i = 0; i < classifier.getNumInterpreters(); i++) {
+                classifier.getInterpreter(i).recognizeImage(warmUpImage, 1f);
+            }
+            warmUpImage.recycle();
+        } catch (RuntimeException e) {
+            classifier.close();
+            throw e;
+        } finally {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        }
+
+        synchronized (mLock) {
+            if (closed) {
+                // Destroyed while we were loading
+                classifier.close();
+                throw new InterruptedException("Closed while loading");
+            }
+            mClassifier = classifier;
+        }
+        Log.d(Constants.CLASSIFIER_LOADER_TAG, "Classifier ready after " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        return classifier;
+    }
+}
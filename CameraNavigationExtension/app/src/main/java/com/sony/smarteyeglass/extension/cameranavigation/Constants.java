@@ -43,22 +43,20 @@ public final class Constants {
     public static final String LOG_TAG = "CameraNavigationExtension";
     public static final String IMAGE_MANAGER_TAG = "ImageManager";
     public static final String IMAGE_RESULT_ACTIVITY_TAG = "ImageResultActivity";
-    public static final String PROCESS_IMAGE_RUNNABLE_TAG = "ProcessImageRunnable";
-    public static final String CLIENT_SOCKET_THREAD_TAG = "ClientSocketThread";
+    public static final String DETECTION_RESULT_HANDLER_TAG = "DetectionResultHandler";
+    public static final String NAVIGATION_CLIENT_TAG = "NavigationClient";
+    public static final String FRAME_PIPELINE_TAG = "FramePipeline";
+    public static final String BACKEND_SELECTOR_TAG = "BackendSelector";
+    public static final String CLASSIFIER_LOADER_TAG = "ClassifierLoader";
+    public static final String OFFLOAD_SCHEDULER_TAG = "OffloadScheduler";
+    public static final String AUDIO_CUE_ENGINE_TAG = "AudioCueEngine";
 
     // Message status tags for use by handlers to do object detection on mobile device
     public static final int IMAGE_PROCESSING_FAILED = 0;
     public static final int IMAGE_PROCESSING_COMPLETED = 1;
-    public static final int STREAMED_IMAGE_READY = 2;
-    public static final int BOUNDING_BOXES_READY = 3;
-    public static final int CLEAR_BOUNDING_BOXES = 4;
-    public static final int REQUEST_FOR_IMAGE_VIEW_REFERENCE = 5;
-    public static final int IMAGE_VIEW_REFERENCE_READY = 6;
+    // (frames, bounding boxes and server results travel over NavigationBus instead)
 
-    // Message tags used by handlers to start, stop, and update beeps
-    public static final int BEEP_FREQUENCY_CLEAR = 7;
-    public static final int BEEP_FREQUENCY_CAREFUL = 8;
-    public static final int BEEP_FREQUENCY_DANGEROUS = 9;
+    // Message tags used by handlers to start and stop beeps
     public static final int PLAY_BEEP_SOUND = 10;
     public static final int STOP_BEEPS = 11;
 
@@ -0,0 +1,68 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.graphics.Bitmap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A camera frame after it has been decoded by FramePipeline. The bitmap is already scaled to the detector's input
+// size and is shared read-only between the preview, the object detection thread and anything else that needs it.
+// Bitmaps are recycled by FrameDecoder, so the frame is reference counted: anything that keeps a frame after the
+// call in which it received it must retain() it and release() it when done. Once the last reference is released
+// the bitmap will be overwritten by a later frame.
+public class DecodedFrame {
+    // Frame ID and capture timestamp (ms since epoch) reported by the SmartEyeGlass for this frame
+    private final int mFrameId;
+    private final long mTimestamp;
+
+    // When decoding finished (System.nanoTime()), for measuring how long detection takes
+    private final long mDecodedTime = System.nanoTime();
+
+    // Decoded image, INPUT_SIZE x INPUT_SIZE
+    private final Bitmap mBitmap;
+
+    // Takes the bitmap back once the last reference is released (null if the bitmap isn't pooled)
+    private final FrameDecoder mOwner;
+
+    private final AtomicInteger mRefCount = new AtomicInteger(1);
+
+    public DecodedFrame(int frameId, long timestamp, Bitmap bitmap, FrameDecoder owner) {
+        mFrameId = frameId;
+        mTimestamp = timestamp;
+        mBitmap = bitmap;
+        mOwner = owner;
+    }
+
+    public int getFrameId() {
+        return mFrameId;
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public long getDecodedTime() {
+        return mDecodedTime;
+    }
+
+    public Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    public DecodedFrame retain() {
+        if (mRefCount.getAndIncrement() <= 0) {
+            throw new IllegalStateException("Frame " + mFrameId + " has already been released");
+        }
+        return this;
+    }
+
+    public void release() {
+        int count = mRefCount.decrementAndGet();
+        if (count == 0) {
+            if (mOwner != null) {
+                mOwner.recycleOutput(mBitmap);
+            }
+        } else if (count < 0) {
+            throw new IllegalStateException("Frame " + mFrameId + " has already been released");
+        }
+    }
+}
@@ -6,7 +6,17 @@ public class Detection {
     private double xCenter;
     private double yCenter;
 
+    // Empty detection to be filled in with set() (used by the binary result protocol, which reuses detections)
+    public Detection() {
+    }
+
+    // Parses a detection in the text result protocol's "label$confidence$xCenter$yCenter" format
     public Detection(String detectionStr) {
+        parse(detectionStr);
+    }
+
+    // Fills this detection in from the text result protocol's format (see Detection(String))
+    public Detection parse(String detectionStr) {
         int currIndex = 0;
         int dollarIndex = detectionStr.indexOf('$', currIndex);
         this.label = detectionStr.substring(currIndex, dollarIndex);
@@ -18,6 +28,15 @@ public class Detection {
         this.xCenter = Double.parseDouble(detectionStr.substring(currIndex, dollarIndex));
         currIndex += (dollarIndex - currIndex) + 1;
         this.yCenter = Double.parseDouble(detectionStr.substring(currIndex));
+        return this;
+    }
+
+    public Detection set(String label, double confidence, double xCenter, double yCenter) {
+        this.label = label;
+        this.confidence = confidence;
+        this.xCenter = xCenter;
+        this.yCenter = yCenter;
+        return this;
     }
 
     public String getLabel() {
@@ -0,0 +1,81 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.os.Handler;
+import android.util.Log;
+import com.sony.smarteyeglass.extension.cameranavigation.tflite.DetectionBatch;
+import com.sony.smarteyeglass.extension.cameranavigation.tflite.MultiBoxTracker;
+import com.sony.smarteyeglass.extension.cameranavigation.tflite.OverlayBoxes;
+import com.sony.smarteyeglass.extension.cameranavigation.tflite.PooledClassifier;
+
+// Receives object detection results from the PooledClassifier's worker threads. Results arrive in frame order
+// (results that finished after a newer frame's results are dropped by the pool before they get here), so the
+// tracker and the bounding boxes shown to the user only ever move forward in time
+public class DetectionResultHandler implements PooledClassifier.Listener {
+
+    // Reference to ImageManager handler so we can send new detections
+    private Handler mHandler;
+
+    // Keeps track of the bounding boxes to show
+    private MultiBoxTracker mTracker;
+
+    // Bounding boxes go to ImageResultActivity through this
+    private final NavigationBus mBus = NavigationBus.get();
+
+    // Told how long each frame took, so it can decide between detecting on the device and the server
+    private OffloadScheduler mScheduler;
+
+    public DetectionResultHandler(MultiBoxTracker tracker, Handler handler, OffloadScheduler scheduler) {
+        this.mTracker = tracker;
+        this.mHandler = handler;
+        this.mScheduler = scheduler;
+    }
+
+    // Called on a detector thread, one frame at a time. The detections belong to the interpreter that produced them
+    // and are overwritten by its next frame, so they must not leave this method
+    @Override
+    public void onDetections(long sequence, Object tag, DetectionBatch detections) {
+        DecodedFrame frame = (DecodedFrame) tag;
+        long now = System.nanoTime();
+        mScheduler.onDeviceResult((now - frame.getDecodedTime()) / 1000, now);
+        FrameTracer.get().mark(frame.getFrameId(), FrameTracer.DETECTED, now);
+        try {
+            Log.d(Constants.DETECTION_RESULT_HANDLER_TAG, "Detection on frame #" + frame.getFrameId() + " (sequence " + sequence + ")");
+
+            // Tell ImageManager in UI thread how many obstacles were found ahead
+            mHandler.obtainMessage(Constants.IMAGE_PROCESSING_COMPLETED, detections.getCount(), frame.getFrameId()).sendToTarget();
+
+            mTracker.trackResults(detections, frame.getTimestamp());
+            if (mBus.overlays.hasReceiver()) {
+                // Replaces any boxes the activity hasn't got round to drawing yet
+                mBus.overlays.post(snapshotBoxes());
+            }
+        } catch(Exception e) {
+            Log.e(Constants.DETECTION_RESULT_HANDLER_TAG, "onDetections(): " + e.toString());
+            mHandler.obtainMessage(Constants.IMAGE_PROCESSING_FAILED).sendToTarget();
+        }
+    }
+
+    // Called on the frame pipeline thread for a frame that isn't run through the detector (the scene hasn't changed,
+    // it went to the server, or detection isn't due yet): moves the boxes to where the tracker expects the objects to
+    // be in it, so they keep up with the camera between detections
+    public void onFrameWithoutDetection(DecodedFrame frame) {
+        boolean hadBoxes = mTracker.predict(frame.getTimestamp());
+        // Only if the activity has caught up, rather than taking snapshots just to have them replaced
+        if (hadBoxes && mBus.overlays.hasReceiver() && mBus.overlays.getDepth() == 0) {
+            mBus.overlays.post(snapshotBoxes());
+        }
+    }
+
+    // Copies the tracker's boxes (in 300x300 frame coordinates) for the activity to scale to its overlay and draw
+    private OverlayBoxes snapshotBoxes() {
+        OverlayBoxes boxes = OverlayBoxes.obtain();
+        mTracker.snapshot(boxes);
+        return boxes;
+    }
+
+    // Called once for every frame handed to the pool, whether or not its results were used
+    @Override
+    public void onFrameDone(long sequence, Object tag) {
+        ((DecodedFrame) tag).release();
+    }
+}
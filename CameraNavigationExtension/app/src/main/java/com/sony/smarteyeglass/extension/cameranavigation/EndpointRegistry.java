@@ -0,0 +1,247 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+// The navigation servers the client can use, from preference_key_servers: a comma-separated list of
+// host[:imagePort[:statusPort]] entries (ports default to 9002 and 9003). probe() resolves every server's host and
+// connects to its status port, all at once on worker threads, timing how long the connection and the server's READY
+// take (unless there is only one server to choose from), and best() then picks the server to
+// use: the one with the lowest measured result latency, or, for servers that haven't been used yet, the lowest
+// probe time. A server that stopped working (see NavigationClient) is demoted for DEMOTION_MS so the client fails
+// over to the next best one. The list can be replaced at any time; getVersion() tells the client it changed.
+public class EndpointRegistry {
+
+    public static final int DEFAULT_IMAGE_PORT = 9002;
+    public static final int DEFAULT_STATUS_PORT = 9003;
+
+    // How long a probe may take before the server counts as unreachable
+    private static final int PROBE_TIMEOUT_MS = 1500;
+
+    // How long a server that stopped working is ranked below all others
+    private static final long DEMOTION_MS = 30000;
+
+    // Weight of a new sample in a server's moving average latency
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    public static final class Server {
+        public final String host;
+        public final int imagePort;
+        public final int statusPort;
+
+        // Connect + READY time from the last probe in microseconds, or -1 if it failed (or hasn't run)
+        long probeMicros = -1;
+
+        // Moving average of the result latency while this server was in use, or -1 if it hasn't been
+        double latencyMicros = -1;
+
+        // Until when (SystemClock.elapsedRealtime()) this server is demoted
+        long demotedUntil;
+
+        // The host's address as of the last probe, or null if it couldn't be resolved (or hasn't been yet). Resolved
+        // by the probe so that connecting never waits for DNS
+        private volatile InetAddress address;
+
+        Server(String host, int imagePort, int statusPort) {
+            this.host = host;
+            this.imagePort = imagePort;
+            this.statusPort = statusPort;
+        }
+
+        // What a frame is expected to take on this server, for ranking. Unreachable servers come last
+        double getCost() {
+            if (latencyMicros >= 0) {
+                return latencyMicros;
+            }
+            return probeMicros >= 0 ? probeMicros : Double.MAX_VALUE;
+        }
+
+        public InetAddress getAddress() {
+            return address;
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + imagePort + ":" + statusPort;
+        }
+    }
+
+    private List<Server> mServers = new ArrayList<>();
+    private int mVersion;
+
+    public EndpointRegistry(String servers) {
+        setServers(servers);
+    }
+
+    // Replaces the list of servers (e.g. after the preference was edited). May be called from any thread
+    public synchronized void setServers(String servers) {
+        List<Server> parsed = new ArrayList<>();
+        for (String entry : servers.split(",")) {
+            Server server = parse(entry.trim());
+            if (server != null) {
+                parsed.add(server);
+            }
+        }
+        mServers = parsed;
+        mVersion++;
+        Log.d(Constants.NAVIGATION_CLIENT_TAG, "Servers: " + parsed);
+    }
+
+    // Changes every time the list of servers is replaced
+    public synchronized int getVersion() {
+        return mVersion;
+    }
+
+    // Resolves and probes all servers in parallel on worker threads, and runs onDone on one of them once every
+    // probe has finished or timed out (after PROBE_TIMEOUT_MS, plus a little). Returns at once
+    public void probe(final Runnable onDone) {
+        final List<Server> servers;
+        synchronized (this) {
+            servers = mServers;
+        }
+        new Thread("Probe servers") {
+            @Override
+            public void run() {
+                probe(servers);
+                onDone.run();
+            }
+        }.start();
+    }
+
+    private void probe(List<Server> servers) {
+        // With a single server there is nothing to choose between, so it is only resolved
+        final boolean time = servers.size() > 1;
+        List<Thread> probes = new ArrayList<>();
+        for (final Server server : servers) {
+            Thread probe = new Thread("Probe " + server) {
+                @Override
+                public void run() {
+                    server.address = resolve(server.host);
+                    if (!time) {
+                        return;
+                    }
+                    long micros = probe(server);
+                    synchronized (EndpointRegistry.this) {
+                        server.probeMicros = micros;
+                    }
+                    Log.d(Constants.NAVIGATION_CLIENT_TAG, "Probed " + server + ": "
+                            + (micros >= 0 ? micros / 1000 + "ms" : "unreachable"));
+                }
+            };
+            probe.start();
+            probes.add(probe);
+        }
+        for (Thread probe : probes) {
+            try {
+                probe.join(PROBE_TIMEOUT_MS * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // The server to use now: the cheapest one that isn't demoted, or the cheapest demoted one if they all are. Null
+    // if there are no servers at all
+    public synchronized Server best(long now) {
+        Server best = null;
+        for (Server server : mServers) {
+            if (best == null || isBetter(server, best, now)) {
+                best = server;
+            }
+        }
+        return best;
+    }
+
+    // Records the latency of a result from server (which may have been removed from the list in the meantime)
+    public synchronized void onResult(Server server, long latencyMicros) {
+        server.latencyMicros = server.latencyMicros < 0 ? latencyMicros
+                : server.latencyMicros + LATENCY_WEIGHT * (latencyMicros - server.latencyMicros);
+    }
+
+    // Ranks server last for a while, because it stopped working while we were using it
+    public synchronized void demote(Server server, long now) {
+        server.demotedUntil = now + DEMOTION_MS;
+        // Whatever it used to do, it is no better than unmeasured now
+        server.latencyMicros = -1;
+        Log.e(Constants.NAVIGATION_CLIENT_TAG, "Demoting server " + server);
+    }
+
+    private static boolean isBetter(Server server, Server than, long now) {
+        boolean demoted = server.demotedUntil > now;
+        if (demoted != (than.demotedUntil > now)) {
+            return !demoted;
+        }
+        return server.getCost() < than.getCost();
+    }
+
+    private static Server parse(String entry) {
+        if (entry.isEmpty()) {
+            return null;
+        }
+        String[] parts = entry.split(":");
+        try {
+            String host = parts[0].trim();
+            int imagePort = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : DEFAULT_IMAGE_PORT;
+            int statusPort = parts.length > 2 ? Integer.parseInt(parts[2].trim()) : DEFAULT_STATUS_PORT;
+            if (parts.length <= 3 && !host.isEmpty() && isValidPort(imagePort) && isValidPort(statusPort)) {
+                return new Server(host, imagePort, statusPort);
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        Log.e(Constants.NAVIGATION_CLIENT_TAG, "Ignoring bad server entry \"" + entry + "\"");
+        return null;
+    }
+
+    private static boolean isValidPort(int port) {
+        return port >= 1 && port <= 65535;
+    }
+
+    private static InetAddress resolve(String host) {
+        try {
+            return InetAddress.getByName(host);
+        } catch (UnknownHostException e) {
+            Log.e(Constants.NAVIGATION_CLIENT_TAG, "Cannot resolve server " + host);
+            return null;
+        }
+    }
+
+    // Connects to the server's status port and waits for its READY line. Returns how long that took in
+    // microseconds, or -1 if it didn't work out within PROBE_TIMEOUT_MS
+    private static long probe(Server server) {
+        if (server.address == null) {
+            return -1;
+        }
+        long start = System.nanoTime();
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(server.address, server.statusPort), PROBE_TIMEOUT_MS);
+            socket.setSoTimeout(PROBE_TIMEOUT_MS);
+            InputStream in = socket.getInputStream();
+            byte[] ready = "READY\n".getBytes("US-ASCII");
+            for (byte expected : ready) {
+                if (in.read() != expected) {
+                    return -1;
+                }
+            }
+            return (System.nanoTime() - start) / 1000;
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing left to do with it
+            }
+        }
+    }
+}
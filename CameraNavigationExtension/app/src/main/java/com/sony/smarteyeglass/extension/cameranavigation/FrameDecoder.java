@@ -0,0 +1,116 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.Log;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Decodes SmartEyeGlass JPEGs straight into square detector-sized bitmaps without allocating per frame.
+//
+// The JPEG is decoded with an inSampleSize chosen from the camera resolution (so e.g. a 3M still is decoded at 1/4
+// size by the JPEG decoder itself instead of at full resolution) into a single mutable bitmap that is reused for
+// every frame via inBitmap. That bitmap is then drawn scaled into an output bitmap taken from a small pool. The
+// output can't be produced by BitmapFactory directly since it only scales uniformly and the detector wants a
+// square image from a 4:3/16:9 camera. Not thread safe: decode() must always be called on the same thread
+// (FramePipeline's), only recycleOutput() may be called from anywhere.
+public class FrameDecoder {
+
+    // Output bitmaps kept around for reuse. Frames are held by the preview, the detector and the mailbox at most,
+    // so a handful is plenty
+    private static final int MAX_POOLED_OUTPUTS = 4;
+
+    // Size (width and height) of the output bitmaps
+    private final int mOutputSize;
+
+    private final BitmapFactory.Options mOptions = new BitmapFactory.Options();
+
+    // Intermediate bitmap the JPEG is decoded into, reused for every frame
+    private Bitmap mDecodeBitmap;
+
+    private final ConcurrentLinkedQueue<Bitmap> mFreeOutputs = new ConcurrentLinkedQueue<>();
+
+    private final Canvas mCanvas = new Canvas();
+
+    private final Paint mScalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private final Rect mOutputRect;
+
+    public FrameDecoder(int outputSize) {
+        mOutputSize = outputSize;
+        mOutputRect = new Rect(0, 0, outputSize, outputSize);
+        mOptions.inMutable = true;
+        mOptions.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        mOptions.inSampleSize = 1;
+    }
+
+    // Chooses the sample size for pictures of the given size (the size configured with setCameraMode()). Uses the
+    // largest power of two that still leaves both sides at least as large as the output, so there is no loss of
+    // detail compared to decoding at full size and scaling down.
+    public void setPictureSize(int width, int height) {
+        int sampleSize = 1;
+        while ((width / (sampleSize * 2)) >= mOutputSize && (height / (sampleSize * 2)) >= mOutputSize) {
+            sampleSize *= 2;
+        }
+        if (sampleSize != mOptions.inSampleSize) {
+            mOptions.inSampleSize = sampleSize;
+            // Sampled size changed, so the intermediate bitmap has to be reallocated on the next frame
+            mDecodeBitmap = null;
+        }
+        Log.d(Constants.FRAME_PIPELINE_TAG, "Camera pictures " + width + "x" + height + " decoded with inSampleSize " + sampleSize);
+    }
+
+    // Decodes the JPEG in data[offset, offset + length) and returns it scaled to outputSize x outputSize, or null if
+    // the data could not be decoded. The returned bitmap comes from the pool and must be given back with
+    // recycleOutput() (DecodedFrame does this when its last reference is released).
+    public Bitmap decode(byte[] data, int offset, int length) {
+        Bitmap decoded = decodeReusing(data, offset, length);
+        if (decoded == null) {
+            return null;
+        }
+
+        Bitmap output = mFreeOutputs.poll();
+        if (output == null) {
+            output = Bitmap.createBitmap(mOutputSize, mOutputSize, Bitmap.Config.ARGB_8888);
+        }
+        // TODO: Check performance when setting bilinear filtering to false
+        mCanvas.setBitmap(output);
+        mCanvas.drawBitmap(decoded, null, mOutputRect, mScalePaint);
+        mCanvas.setBitmap(null);
+        return output;
+    }
+
+    // The whole picture as decoded by the last decode() (subsampled by inSampleSize, not scaled to the output size).
+    // Overwritten by the next decode(), so only valid on the decoding thread until then
+    public Bitmap getDecodedPicture() {
+        return mDecodeBitmap;
+    }
+
+    // Takes back an output bitmap once nobody is using it anymore. May be called from any thread.
+    public void recycleOutput(Bitmap bitmap) {
+        if (mFreeOutputs.size() < MAX_POOLED_OUTPUTS) {
+            mFreeOutputs.offer(bitmap);
+        }
+    }
+
+    private Bitmap decodeReusing(byte[] data, int offset, int length) {
+        mOptions.inBitmap = mDecodeBitmap;
+        try {
+            Bitmap decoded = BitmapFactory.decodeByteArray(data, offset, length, mOptions);
+            if (decoded != null) {
+                mDecodeBitmap = decoded;
+            }
+            return decoded;
+        } catch (IllegalArgumentException e) {
+            // Picture no longer fits into the reused bitmap (e.g. the resolution changed), so decode into a new one
+            // and reuse that from now on
+            Log.d(Constants.FRAME_PIPELINE_TAG, "Unable to reuse decode bitmap, reallocating: " + e.getMessage());
+            mOptions.inBitmap = null;
+            mDecodeBitmap = BitmapFactory.decodeByteArray(data, offset, length, mOptions);
+            return mDecodeBitmap;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Single-slot "latest frame wins" mailbox between the camera thread and the detection worker. Posting never
+// blocks: a new frame simply replaces whatever frame is still waiting, and the replaced frame is handed to the
+// Recycler (so pooled buffers go straight back to their pool). The worker takes the newest frame the moment it
+// is free, so it never processes a frame that is older than one it could have had instead.
+public class FrameMailbox<T> {
+
+    // Called with frames that were replaced before anyone took them, or that were still waiting on clear()
+    public interface Recycler<T> {
+        void recycle(T frame);
+    }
+
+    // The waiting frame, or null when the slot is empty
+    private final AtomicReference<T> slot = new AtomicReference<>();
+
+    // Holds one permit whenever the slot went from empty to full, so take() can sleep while the slot is empty
+    private final Semaphore available = new Semaphore(0);
+
+    private final Recycler<T> recycler;
+
+    // Frames that were overwritten before a worker took them (i.e. stale work we skipped)
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    // Frames handed to a worker
+    private final AtomicLong consumedCount = new AtomicLong();
+
+    public FrameMailbox(Recycler<T> recycler) {
+        this.recycler = recycler;
+    }
+
+    // Puts frame in the slot, replacing (and recycling) the frame that was still waiting. Never blocks.
+    public void post(T frame) {
+        T replaced = slot.getAndSet(frame);
+        if (replaced == null) {
+            available.release();
+        } else {
+            droppedCount.incrementAndGet();
+            recycle(replaced);
+        }
+    }
+
+    // Waits until a frame is available and takes it out of the slot
+    public T take() throws InterruptedException {
+        available.acquire();
+        // A permit is only released on an empty -> full transition and only takers empty the slot, so the slot
+        // cannot be empty here
+        T frame = slot.getAndSet(null);
+        consumedCount.incrementAndGet();
+        return frame;
+    }
+
+    // Takes the waiting frame without blocking, or returns null if there is none
+    public T poll() {
+        if (!available.tryAcquire()) {
+            return null;
+        }
+        T frame = slot.getAndSet(null);
+        consumedCount.incrementAndGet();
+        return frame;
+    }
+
+    // Recycles the waiting frame (if any) without counting it as dropped, e.g. when the camera stops
+    public void clear() {
+        if (available.tryAcquire()) {
+            T frame = slot.getAndSet(null);
+            recycle(frame);
+        }
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getConsumedCount() {
+        return consumedCount.get();
+    }
+
+    private void recycle(T frame) {
+        if (recycler != null && frame != null) {
+            recycler.recycle(frame);
+        }
+    }
+}
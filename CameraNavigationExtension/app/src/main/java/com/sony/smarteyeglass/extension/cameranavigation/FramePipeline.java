@@ -0,0 +1,90 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.sony.smarteyeglass.extension.util.CameraEvent;
+import com.sony.smarteyeglass.extension.util.FrameBuffer;
+
+// Frame-processing stage between the SmartEyeGlass camera socket and the rest of the app. Camera events are
+// delivered on this stage's own thread (see SmartEyeglassControlUtils.setCameraEventLooper()), where each JPEG is
+// decoded exactly once and the result is handed to the Listener to fan out to the preview, the object detection
+// thread and the server uploader. Nothing in here runs on the UI thread.
+public class FramePipeline {
+
+    public interface Listener {
+        // Called on the pipeline thread for every successfully decoded frame. Both frame and jpeg (the original
+        // camera data) are only valid for the duration of the call unless the listener retains them
+        void onFrameDecoded(DecodedFrame frame, FrameBuffer jpeg);
+    }
+
+    private final HandlerThread mThread;
+
+    private final Listener mListener;
+
+    private final Handler mHandler;
+
+    // Decodes pictures straight to outputSize x outputSize. Only used on the pipeline thread
+    private final FrameDecoder mDecoder;
+
+    public FramePipeline(int outputSize, Listener listener) {
+        mDecoder = new FrameDecoder(outputSize);
+        mListener = listener;
+        // Slightly below foreground priority so decoding never competes with the UI thread
+        mThread = new HandlerThread("FramePipeline", Process.THREAD_PRIORITY_DISPLAY + 1);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    // Tells the decoder what size the camera pictures will be, so it can pick how much to subsample them while
+    // decoding. May be called from any thread
+    public void setPictureSize(final int width, final int height) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mDecoder.setPictureSize(width, height);
+            }
+        });
+    }
+
+    // Looper camera events should be delivered on
+    public Looper getLooper() {
+        return mThread.getLooper();
+    }
+
+    // Decodes the picture in event and passes it on to the listener. Must be called on the pipeline thread.
+    public void process(CameraEvent event) {
+        FrameBuffer jpeg = event.getBuffer();
+        if (jpeg == null) {
+            jpeg = FrameBuffer.wrap(event.getData());
+        }
+
+        Bitmap bitmap = mDecoder.decode(jpeg.getArray(), jpeg.getOffset(), jpeg.getLength());
+        if (bitmap == null) {
+            Log.e(Constants.FRAME_PIPELINE_TAG, "Unable to decode frame " + event.getFrameId());
+            return;
+        }
+
+        DecodedFrame frame = new DecodedFrame(event.getFrameId(), event.getTimestamp(), bitmap, mDecoder);
+        try {
+            mListener.onFrameDecoded(frame, jpeg);
+        } finally {
+            // Consumers that keep the frame have retained it
+            frame.release();
+        }
+    }
+
+    // The whole picture the frame being passed to the listener was decoded from, at the camera resolution (divided
+    // by the decoder's inSampleSize). Only valid on the pipeline thread, during onFrameDecoded()
+    public Bitmap getDecodedPicture() {
+        return mDecoder.getDecodedPicture();
+    }
+
+    public void quit() {
+        mThread.quitSafely();
+    }
+}
@@ -0,0 +1,151 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Follows camera frames from the glass to the user's ear, to see where the time goes. Each frame is traced by its
+// SmartEyeGlass frame ID: every stage it passes through (decoding, detection or upload, the server's result, the
+// beep/speech decision) marks the time it got there. Marks go into one ring buffer per stage, which only costs a few
+// array writes and never takes a lock or allocates, so stages can mark from whatever thread they run on. getReport()
+// joins the marks of the frames still in the rings and gives the p50/p95/p99 of each step along the way.
+//
+// The capture time comes from the glass's clock, so the first step (glass to phone) also includes whatever the two
+// clocks are apart; steps after that are measured on the phone alone.
+public final class FrameTracer {
+
+    // Stages, in the order a frame passes through them
+    public static final int CAPTURED = 0;
+    public static final int RECEIVED = 1;
+    public static final int DECODED = 2;
+    public static final int DETECTED = 3;
+    public static final int UPLOAD_STARTED = 4;
+    public static final int UPLOADED = 5;
+    public static final int SERVER_RESULT = 6;
+    public static final int CUE = 7;
+    private static final int NUM_STAGES = 8;
+
+    // Marks kept per stage, i.e. roughly the last minute of frames at the camera's frame rate (a power of two)
+    private static final int RING_SIZE = 512;
+
+    // Steps in the report (from stage, to stage) and their names
+    private static final int[][] STEPS = {
+            {CAPTURED, RECEIVED},
+            {RECEIVED, DECODED},
+            {DECODED, DETECTED},
+            {DECODED, UPLOAD_STARTED},
+            {UPLOAD_STARTED, UPLOADED},
+            {UPLOADED, SERVER_RESULT},
+            {SERVER_RESULT, CUE},
+            {CAPTURED, DETECTED},
+            {CAPTURED, CUE},
+    };
+    private static final String[] STEP_NAMES = {
+            "glass to phone",
+            "decode",
+            "device detection",
+            "upload queue",
+            "upload",
+            "server",
+            "cue decision",
+            "glass to boxes",
+            "glass to cue",
+    };
+
+    private static final FrameTracer sInstance = new FrameTracer();
+
+    // Marks of one stage. A writer claims a slot and then fills it in, so a report made at that very moment may see
+    // the slot half written; that costs the report one sample at most
+    private static final class Ring {
+        final int[] frameIds = new int[RING_SIZE];
+        final long[] times = new long[RING_SIZE];
+        final AtomicInteger next = new AtomicInteger();
+
+        void mark(int frameId, long nanos) {
+            int index = next.getAndIncrement() & (RING_SIZE - 1);
+            times[index] = nanos;
+            frameIds[index] = frameId;
+        }
+    }
+
+    private final Ring[] mRings = new Ring[NUM_STAGES];
+
+    public static FrameTracer get() {
+        return sInstance;
+    }
+
+    private FrameTracer() {
+        for (int i = 0; i < NUM_STAGES; i++) {
+            mRings[i] = new Ring();
+        }
+    }
+
+    // Marks that frameId reached stage at nanos (System.nanoTime())
+    public void mark(int frameId, int stage, long nanos) {
+        mRings[stage].mark(frameId, nanos);
+    }
+
+    // Marks that frameId, captured by the glass at captureTime (ms since the epoch, glass clock), has just been
+    // received from the host app
+    public void markReceived(int frameId, long captureTime) {
+        long now = System.nanoTime();
+        long sinceCapture = Math.max(0, System.currentTimeMillis() - captureTime);
+        mRings[CAPTURED].mark(frameId, now - sinceCapture * 1000000);
+        mRings[RECEIVED].mark(frameId, now);
+    }
+
+    // Forgets all marks, e.g. because the camera restarts and will number its frames from the start again
+    public void clear() {
+        for (Ring ring : mRings) {
+            ring.next.set(0);
+        }
+    }
+
+    // Per-step latency percentiles over the frames currently in the rings. Allocates, so call it now and then
+    // rather than per frame
+    public String getReport() {
+        Map<Integer, long[]> frames = new HashMap<>();
+        for (int stage = 0; stage < NUM_STAGES; stage++) {
+            Ring ring = mRings[stage];
+            int end = ring.next.get();
+            for (int i = Math.max(0, end - RING_SIZE); i < end; i++) {
+                int index = i & (RING_SIZE - 1);
+                long[] times = frames.get(ring.frameIds[index]);
+                if (times == null) {
+                    times = new long[NUM_STAGES];
+                    frames.put(ring.frameIds[index], times);
+                }
+                times[stage] = ring.times[index];
+            }
+        }
+
+        StringBuilder report = new StringBuilder("Latency of the last " + frames.size() + " frames:\n");
+        for (int step = 0; step < STEPS.length; step++) {
+            LatencyHistogram histogram = new LatencyHistogram(frames.size() + 1);
+            for (long[] times : frames.values()) {
+                long from = times[STEPS[step][0]];
+                long to = times[STEPS[step][1]];
+                if (from != 0 && to != 0 && to >= from) {
+                    histogram.add((to - from) / 1000);
+                }
+            }
+            if (histogram.getCount() > 0) {
+                report.append("  ").append(STEP_NAMES[step]).append(": ").append(histogram).append('\n');
+            }
+        }
+        return report.toString();
+    }
+
+    // Writes getReport() to path, for pulling off the phone after a walk
+    public void writeReport(String path) throws IOException {
+        Writer writer = new FileWriter(path);
+        try {
+            writer.write(getReport());
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+// Decides whether the server is healthy from PING/PONG heartbeats on the status channel. Every answered ping adds
+// its round-trip time to a rolling histogram. The server is declared unhealthy after MISSED_LIMIT pings in a row go
+// unanswered, or when the p95 round-trip time goes above the limit. To stop us flapping between on-device and server
+// inference, it is only declared healthy again after RECOVER_COUNT good pongs in a row with the p95 back below
+// RECOVER_FRACTION of the limit. Used on the client thread only.
+public class HeartbeatMonitor {
+
+    // Unanswered pings in a row after which the server counts as gone
+    private static final int MISSED_LIMIT = 3;
+
+    // Good pongs in a row needed before the server counts as healthy (again)
+    private static final int RECOVER_COUNT = 3;
+
+    // The p95 has to drop this far below the limit before the server counts as healthy again
+    private static final double RECOVER_FRACTION = 0.75;
+
+    // Round trips kept in the histogram, and how many are needed before the p95 is trusted
+    private static final int WINDOW_SIZE = 32;
+    private static final int MIN_SAMPLES = 8;
+
+    private final long mMaxP95Micros;
+
+    private final LatencyHistogram mRoundTrips = new LatencyHistogram(WINDOW_SIZE);
+
+    // Ping waiting for its pong
+    private boolean mAwaitingPong;
+    private int mAwaitingSeq;
+    private long mPingTime;
+
+    private int mMissedCount;
+    private int mGoodCount;
+    private boolean mHealthy;
+
+    public HeartbeatMonitor(long maxP95Millis) {
+        mMaxP95Micros = maxP95Millis * 1000;
+    }
+
+    // Records a ping sent at time now (System.nanoTime()). If the previous ping is still unanswered it counts as missed
+    public void onPingSent(int seq, long now) {
+        if (mAwaitingPong) {
+            mMissedCount++;
+            mGoodCount = 0;
+        }
+        mAwaitingPong = true;
+        mAwaitingSeq = seq;
+        mPingTime = now;
+    }
+
+    // Records a pong received at time now (System.nanoTime()). Pongs for pings that were already counted as missed
+    // are ignored
+    public void onPong(int seq, long now) {
+        if (!mAwaitingPong || seq != mAwaitingSeq) {
+            return;
+        }
+        mAwaitingPong = false;
+        long roundTrip = (now - mPingTime) / 1000;
+        mRoundTrips.add(roundTrip);
+        mMissedCount = 0;
+        if (roundTrip <= mMaxP95Micros) {
+            mGoodCount++;
+        } else {
+            mGoodCount = 0;
+        }
+    }
+
+    // Updates and returns whether the server is healthy
+    public boolean isHealthy() {
+        boolean enoughSamples = mRoundTrips.getCount() >= MIN_SAMPLES;
+        long p95 = mRoundTrips.getPercentile(0.95);
+        if (mHealthy) {
+            if (mMissedCount >= MISSED_LIMIT || (enoughSamples && p95 > mMaxP95Micros)) {
+                mHealthy = false;
+                mGoodCount = 0;
+            }
+        } else if (mMissedCount == 0 && mGoodCount >= RECOVER_COUNT
+                && (!enoughSamples || p95 <= mMaxP95Micros * RECOVER_FRACTION)) {
+            mHealthy = true;
+        }
+        return mHealthy;
+    }
+
+    public LatencyHistogram getRoundTrips() {
+        return mRoundTrips;
+    }
+
+    // Starts over, e.g. after reconnecting. The server counts as unhealthy until it has answered enough pings
+    public void reset() {
+        mAwaitingPong = false;
+        mMissedCount = 0;
+        mGoodCount = 0;
+        mHealthy = false;
+        mRoundTrips.clear();
+    }
+}
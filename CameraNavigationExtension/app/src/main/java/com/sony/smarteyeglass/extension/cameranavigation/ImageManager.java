@@ -35,34 +35,32 @@ package com.sony.smarteyeglass.extension.cameranavigation;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Point;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
 import android.preference.PreferenceManager;
 import android.speech.tts.TextToSpeech;
 import android.util.DisplayMetrics;
 import android.util.Log;
-import android.widget.ImageView;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Locale;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import com.sony.smarteyeglass.SmartEyeglassControl;
-import com.sony.smarteyeglass.extension.cameranavigation.tflite.Classifier;
 import com.sony.smarteyeglass.extension.cameranavigation.tflite.MultiBoxTracker;
-import com.sony.smarteyeglass.extension.cameranavigation.tflite.TFLiteObjectDetectionAPIModel;
+import com.sony.smarteyeglass.extension.cameranavigation.tflite.PooledClassifier;
 import com.sony.smarteyeglass.extension.util.CameraEvent;
 import com.sony.smarteyeglass.extension.util.ControlCameraException;
+import com.sony.smarteyeglass.extension.util.FrameBuffer;
 import com.sony.smarteyeglass.extension.util.SmartEyeglassControlUtils;
 import com.sony.smarteyeglass.extension.util.SmartEyeglassEventListener;
 import com.sonyericsson.extras.liveware.aef.control.Control;
@@ -88,6 +86,16 @@ public final class ImageManager extends ControlExtension {
     public static final int INPUT_SIZE = 300;
     private final boolean QUANTIZED = true;
 
+    // Number of interpreters (each with its own detection thread) that work on consecutive frames in parallel
+    private static final int NUM_INTERPRETERS = 2;
+
+    // We only keep detections with a confidence of at least 0.5 (further testing of this value could be helpful)
+    private static final float MINIMUM_CONFIDENCE_LEVEL = 0.5f;
+
+    // Server used when none have been configured in the preferences
+    // TODO: Change IP to correspond to actual server used
+    private static final String DEFAULT_SERVERS = "192.168.1.2";
+
     // Stores dimensions of view displaying streamed images
     private final Point DISPLAY_SIZE = new Point();
 
@@ -106,41 +114,123 @@ public final class ImageManager extends ControlExtension {
     private int pointY;
     private int pointBaseX;
 
-    // Responsible for object detection
-    private Classifier mClassifier;
+    // Loads the classifier responsible for object detection in the background. Once it is ready, frames are handed
+    // to it from the frame pipeline thread and results come back, in frame order, to mDetectionResultHandler on the
+    // detection threads. Until then frames go to the server or are dropped
+    private ClassifierLoader mClassifierLoader;
 
     // Responsible for drawing bounding boxes
     private MultiBoxTracker mTracker;
 
-    // Manages single thread on which object detection is executed
-    private Executor mExecutor;
+    // Turns detection results into bounding boxes for ImageResultActivity and releases frames the classifier is done with
+    private DetectionResultHandler mDetectionResultHandler;
 
-    // Manages single thread that plays beep sound
-    private Executor mBeepExecutor;
+    // Background stage on which camera frames are received and decoded (keeps all of that off the UI thread)
+    private final FramePipeline mFramePipeline;
 
-    // Handles messages from object detection thread as well as from ImageResultActivity
+    // Redraws the SmartEyeGlass display with the latest frame count
+    private final Runnable mUpdateDisplayRunnable = new Runnable() {
+        @Override
+        public void run() {
+            updateDisplay();
+        }
+    };
+
+    // Thread that plays beep sounds, so the UI thread never waits on the audio system
+    private HandlerThread mBeepThread;
+
+    // Handles messages from object detection thread and NavigationClient
     private Handler mHandler;
 
+    // Channels to and from ImageResultActivity, DetectionResultHandler, NavigationClient and the beep thread
+    private final NavigationBus mBus = NavigationBus.get();
+
+    // Configures the tracker once ImageResultActivity has told us the size of its overlay
+    private final MessageChannel.Receiver<Point> mDisplaySizeReceiver = new MessageChannel.Receiver<Point>() {
+        @Override
+        public void onMessage(Point size) {
+            onDisplaySize(size);
+        }
+    };
+
+    private final MessageChannel.Receiver<ServerResult> mServerResultReceiver = new MessageChannel.Receiver<ServerResult>() {
+        @Override
+        public void onMessage(ServerResult result) {
+            onServerResult(result);
+        }
+    };
+
+    // Beeps, ready to play. Only used on mBeepThread
+    private AudioCueEngine mCueEngine;
+
+    // Runs on mBeepThread
+    private final MessageChannel.Receiver<Integer> mBeepReceiver = new MessageChannel.Receiver<Integer>() {
+        @Override
+        public void onMessage(Integer dangerLevel) {
+            mCueEngine.play(dangerLevel);
+        }
+    };
+
+    // Marks each frame's way through the app, for the latency report written when the camera stops
+    private final FrameTracer mTracer = FrameTracer.get();
+
+    // Frames decoded so far, for logging the bus' queue depths now and then (frame pipeline thread only)
+    private long mDecodedCount;
+
+    // Connection to the server (sends it images, receives depth/object data)
+    private NavigationClient mNavigationClient;
+
+    // Passes edits of the server list on to the client while it runs (SharedPreferences only keeps a weak reference
+    // to it, hence the field)
+    private final SharedPreferences.OnSharedPreferenceChangeListener mServersListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+                    if (context.getString(R.string.preference_key_servers).equals(key)) {
+                        mNavigationClient.setServers(prefs.getString(key, DEFAULT_SERVERS));
+                    }
+                }
+            };
+
+    // Decides for each frame whether it goes to the server, the classifier on the device, or both
+    private OffloadScheduler mOffloadScheduler;
+
+    // Scales, crops and re-encodes frames for upload so they fit what the uplink can carry
+    private UploadEncoder mUploadEncoder;
+
+    // Skips frames that look the same as the last one processed (the results of that one still stand)
+    private SceneChangeDetector mSceneChangeDetector;
+
+    // Size of the last frame uploaded, for counting how much skipping frames saves (frame pipeline thread only)
+    private int mLastUploadBytes;
+
+    // Least time between frames run through object detection on the device (0 for every frame), and when
+    // (its decode time in ms of System.nanoTime()) the last one was. Boxes are predicted for the frames in between
+    private long mDetectionIntervalMs;
+    private long mLastDetectionTime;
+
     // For reading out objects and danger zone to user
     TextToSpeech mTextToSpeech;
 
     BlockingQueue<Integer> mIntegerBlockingQueue;
     BlockingQueue<String> mStringBlockingQueue;
 
-    // Keeps track of whether ImageResultActivity has sent back a reference to the ImageView that displays streamed images
-    private boolean imageViewReceived = false;
-
-    // Keeps track of whether object detection thread has finished processing image and is ready for next streamed image
-    private boolean readyForNextImage = true;
+    // Keeps track of whether ImageResultActivity has sent the size of the view that displays streamed images
+    // (set on the UI thread, read on the frame pipeline thread)
+    private volatile boolean imageViewReceived = false;
 
     // Number of images streamed from SmartEyeGlass camera
-    private int imageCounter;
+    private volatile int imageCounter;
 
     // Initial delay between beeps
     private int beepDelay = 1500;
 
-    // Keeps track of when server is available and images should be sent to it - also controls whether beeps play
-    private boolean serverAvailable = false;
+    // Danger level of the last server result (0 = clear, 1 = careful, 2 = dangerous)
+    private int mDangerLevel;
+
+    // Keeps track of when server is available and images can be sent to it - also controls whether beeps play
+    // (set on the UI thread, read on the frame pipeline thread)
+    private volatile boolean serverAvailable = false;
 
     private int speakCounter = 0;
 
@@ -183,44 +273,30 @@ public final class ImageManager extends ControlExtension {
             }
         };
 
+        // Camera frames are received and decoded on the frame pipeline's thread rather than the UI thread
+        mFramePipeline = new FramePipeline(INPUT_SIZE, new FramePipeline.Listener() {
+            @Override
+            public void onFrameDecoded(DecodedFrame frame, FrameBuffer jpeg) {
+                ImageManager.this.onFrameDecoded(frame, jpeg);
+            }
+        });
+
         // Initialize and configure variables for interfacing with SmartEyeGlass
         utils = new SmartEyeglassControlUtils(hostAppPackageName, listener);
         utils.setRequiredApiVersion(SMARTEYEGLASS_API_VERSION);
+        utils.setCameraEventLooper(mFramePipeline.getLooper());
         utils.activate(context);
         width = context.getResources().getDimensionPixelSize(R.dimen.smarteyeglass_control_width);
         height = context.getResources().getDimensionPixelSize(R.dimen.smarteyeglass_control_height);
 
-        // Initialize the classifier and set number of threads equal to number of cores available on device
-        try {
-            mClassifier = TFLiteObjectDetectionAPIModel.create(this.context.getAssets(), MODEL_FILE, LABELS_FILE, INPUT_SIZE, QUANTIZED);
-            mClassifier.setNumThreads(Runtime.getRuntime().availableProcessors());
-        } catch (IOException e) {
-            Log.e(Constants.IMAGE_MANAGER_TAG, "Unable to create Classifier. Error: \n" + e.toString());
-        }
-
-        // Initialize MultiBoxTracker and Executor
-        mTracker = new MultiBoxTracker(this.context);
-        mExecutor = Executors.newSingleThreadExecutor();
+        // Initialize MultiBoxTracker
+        mTracker = new MultiBoxTracker();
 
-        // Initialize Executor to sound beeps
-        mBeepExecutor = Executors.newSingleThreadExecutor();
-
-        // Initialize TextToSpeech
-        mTextToSpeech = new TextToSpeech(context, new TextToSpeech.OnInitListener() {
-            @Override
-            public void onInit(int status) {
-                if(status == TextToSpeech.SUCCESS) {
-                    int result = mTextToSpeech.setLanguage(Locale.ENGLISH);
-                    if(result == TextToSpeech.LANG_MISSING_DATA || result == TextToSpeech.LANG_NOT_SUPPORTED){
-                        Log.e("error", "This Language is not supported");
-                    } else {
-                        Log.e("success", "We good!!!");
-                    }
-                } else {
-                    Log.e("error", "Initialization failed");
-                }
-            }
-        });
+        // Initialize thread to sound beeps
+        mBeepThread = new HandlerThread("Beeps");
+        mBeepThread.start();
+        mCueEngine = new AudioCueEngine();
+        mBus.beeps.setReceiver(mBeepThread.getLooper(), mBeepReceiver);
 
         mIntegerBlockingQueue = new LinkedBlockingQueue<>();
         mStringBlockingQueue = new LinkedBlockingQueue<>();
@@ -237,57 +313,11 @@ public final class ImageManager extends ControlExtension {
                         break;
                     case Constants.IMAGE_PROCESSING_COMPLETED:
                         // This is where analysis of results need to be done
-                        readyForNextImage = true;
-                        Log.d(Constants.IMAGE_MANAGER_TAG, "Message received! => msg.what = " + msg.what + "\nmsg.obj = " + msg.obj.toString());
-                        break;
-                    case Constants.IMAGE_VIEW_REFERENCE_READY:
-                        // Use the ImageResultActivity reference given to get dimensions of ImageView containing streamed
-                        // images and configure tracker
-                        ImageView imageView = (ImageView) msg.obj;
-                        DISPLAY_SIZE.x = imageView.getWidth();
-                        DISPLAY_SIZE.y = imageView.getHeight();
-                        mTracker.setFrameConfiguration(INPUT_SIZE, INPUT_SIZE, 0);
-                        imageViewReceived = true;
-                        Log.d(Constants.IMAGE_MANAGER_TAG, "Received activity, extracted imageView");
-                        break;
-                    case Constants.BEEP_FREQUENCY_CLEAR:
-                        Log.e(Constants.IMAGE_MANAGER_TAG, "Updating beep to clear");
-                        Log.e(Constants.IMAGE_MANAGER_TAG, "Objects (server): " + msg.obj.toString());
-                        beepDelay = 1500; // TODO: Fine-tune beep delay
-                        break;
-                    case Constants.BEEP_FREQUENCY_CAREFUL:
-                        Log.e(Constants.IMAGE_MANAGER_TAG, "Updating beep to careful");
-                        ClientSocketThread.Data dataC = (ClientSocketThread.Data)msg.obj;
-                        ArrayList<Detection> objectsCareful = dataC.mDetections;
-                        Log.e(Constants.IMAGE_MANAGER_TAG, "Objects (server): " + objectsCareful.toString());
-                        if(speakCounter % 3 == 0) {
-                            if(!dataC.mDangerSide.equals(dangerSide)) {
-                                convertTextToSpeech(dataC.mDangerSide);
-                                dangerSide = dataC.mDangerSide;
-                            }
-                            for (Detection object : objectsCareful) {
-                                convertTextToSpeech(object.getLabel());
-                            }
-                        }
-                        speakCounter++;
-                        beepDelay = 750;
-                        break;
-                    case Constants.BEEP_FREQUENCY_DANGEROUS:
-                        Log.e(Constants.IMAGE_MANAGER_TAG, "Updating beep to dangerous");
-                        ClientSocketThread.Data dataD = (ClientSocketThread.Data)msg.obj;
-                        ArrayList<Detection> objectsDangerous = dataD.mDetections;
-                        Log.e(Constants.IMAGE_MANAGER_TAG, "Objects (server): " + objectsDangerous.toString());
-                        if(speakCounter % 3 == 0) {
-                            if(!dataD.mDangerSide.equals(dangerSide)) {
-                                convertTextToSpeech(dataD.mDangerSide);
-                                dangerSide = dataD.mDangerSide;
-                            }
-                            for (Detection object : objectsDangerous) {
-                                convertTextToSpeech(object.getLabel());
-                            }
+                        Log.d(Constants.IMAGE_MANAGER_TAG, "Message received! => msg.what = " + msg.what + "\nframe #" + msg.arg2 + ": " + msg.arg1 + " detections");
+                        PooledClassifier classifier = mClassifierLoader.getIfReady();
+                        if (classifier != null) {
+                            Log.d(Constants.IMAGE_MANAGER_TAG, "Detection " + classifier.getStatString());
                         }
-                        speakCounter++;
-                        beepDelay = 300;
                         break;
                     case Constants.PLAY_BEEP_SOUND:
                         Log.e(Constants.IMAGE_MANAGER_TAG, "Playing beep - check");
@@ -300,8 +330,10 @@ public final class ImageManager extends ControlExtension {
                         Log.e(Constants.IMAGE_MANAGER_TAG, "Server is available. Switching to server. Turning beeps on");
                         mHandler.obtainMessage(Constants.PLAY_BEEP_SOUND).sendToTarget();
                         serverAvailable = true;
+                        // Get fresh results from the server even if the scene hasn't changed
+                        mSceneChangeDetector.reset();
                         //Log.e(Constants.IMAGE_MANAGER_TAG, "After setting serverAvailable: " + serverAvailable);
-                        ImageResultActivity.mHandler.obtainMessage(Constants.CLEAR_BOUNDING_BOXES).sendToTarget();
+                        mBus.overlays.post(null);
                         break;
                     case Constants.SERVER_UNAVAILABLE:
                         Log.e(Constants.IMAGE_MANAGER_TAG, "Server is no longer available. Switching to mobile device. Turning beeps off");
@@ -314,9 +346,65 @@ public final class ImageManager extends ControlExtension {
             }
         };
 
-        // Start thread for socket listening for depth/object data from server
-        new ClientSocketThread(mHandler).start();
-        new ClientSocketStatusThread(mHandler).start();
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        mOffloadScheduler = new OffloadScheduler(prefs.getString(context.getString(R.string.preference_key_offload_mode),
+                OffloadScheduler.MODE_AUTO));
+
+        // Start loading the classifier pool (model, labels, backend selection, warm-up) in the background, so this
+        // constructor returns without waiting for it
+        mDetectionResultHandler = new DetectionResultHandler(mTracker, mHandler, mOffloadScheduler);
+        mClassifierLoader = new ClassifierLoader(context, MODEL_FILE, LABELS_FILE, INPUT_SIZE, QUANTIZED,
+                NUM_INTERPRETERS, MINIMUM_CONFIDENCE_LEVEL, mDetectionResultHandler);
+        mClassifierLoader.start();
+
+        // Binding to the TextToSpeech service takes a while, so do it after the host app is done creating us (the
+        // handler runs this before any message that could make us speak)
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                initTextToSpeech();
+            }
+        });
+
+        // Start the client that sends images to the server and receives depth/object data from it
+        mDetectionIntervalMs = Long.parseLong(prefs.getString(context.getString(R.string.preference_key_detection_interval), "0"));
+        mSceneChangeDetector = new SceneChangeDetector(
+                Integer.parseInt(prefs.getString(context.getString(R.string.preference_key_scene_change_threshold), "4")));
+        mUploadEncoder = new UploadEncoder(
+                Integer.parseInt(prefs.getString(context.getString(R.string.preference_key_upload_width), "0")),
+                Float.parseFloat(prefs.getString(context.getString(R.string.preference_key_upload_band), "1")));
+        String protocol = prefs.getString(context.getString(R.string.preference_key_server_protocol), ServerProtocol.TEXT);
+        int uploadWindow = Integer.parseInt(prefs.getString(context.getString(R.string.preference_key_upload_window), "2"));
+        long heartbeatInterval = Long.parseLong(prefs.getString(context.getString(R.string.preference_key_heartbeat_interval), "0"));
+        long maxServerLatency = Long.parseLong(prefs.getString(context.getString(R.string.preference_key_max_server_latency), "300"));
+        mNavigationClient = new NavigationClient(new NavigationClient.Listener() {
+            @Override
+            public void onServerAvailable() {
+                mHandler.obtainMessage(Constants.SERVER_AVAILABLE).sendToTarget();
+            }
+
+            @Override
+            public void onServerUnavailable() {
+                mHandler.obtainMessage(Constants.SERVER_UNAVAILABLE).sendToTarget();
+            }
+
+            @Override
+            public void onImageSent(int bytes, long micros, boolean waitedForNetwork) {
+                mUploadEncoder.onImageSent(bytes, micros, waitedForNetwork);
+            }
+
+            @Override
+            public void onResult(ServerResult result, long latencyMicros) {
+                mOffloadScheduler.onServerResult(latencyMicros, System.nanoTime());
+                // Update beep frequency based on danger level and pass on the detections (on the UI thread)
+                mBus.serverResults.post(result);
+            }
+        }, prefs.getString(context.getString(R.string.preference_key_servers), DEFAULT_SERVERS), protocol, uploadWindow,
+                heartbeatInterval, maxServerLatency);
+        mBus.displaySizes.setReceiver(Looper.getMainLooper(), mDisplaySizeReceiver);
+        mBus.serverResults.setReceiver(Looper.getMainLooper(), mServerResultReceiver);
+        mNavigationClient.start();
+        prefs.registerOnSharedPreferenceChangeListener(mServersListener);
     }
 
     /**
@@ -341,6 +429,8 @@ public final class ImageManager extends ControlExtension {
         try {
             Log.d(Constants.IMAGE_MANAGER_TAG, "startCamera ");
             utils.startCamera();
+            // Start the latency report afresh for this camera run (its frame IDs may start over)
+            mTracer.clear();
         } catch (ControlCameraException e) {
             Log.d(Constants.IMAGE_MANAGER_TAG, "Failed to register listener", e);
         }
@@ -355,6 +445,22 @@ public final class ImageManager extends ControlExtension {
     private void cleanupCamera() {
         utils.stopCamera();
         cameraStarted = false;
+        writeLatencyReport();
+    }
+
+    // Logs where the time went for the frames of this camera run, and saves it to the app's external files
+    // directory (latency-report.txt) so it can be pulled off the phone
+    private void writeLatencyReport() {
+        Log.d(Constants.IMAGE_MANAGER_TAG, mTracer.getReport());
+        File directory = context.getExternalFilesDir(null);
+        if (directory == null) {
+            return;
+        }
+        try {
+            mTracer.writeReport(new File(directory, "latency-report.txt").getPath());
+        } catch (IOException e) {
+            Log.e(Constants.IMAGE_MANAGER_TAG, "Unable to write latency report: " + e.toString());
+        }
     }
 
     // When app becomes visible, set up camera mode choices
@@ -384,6 +490,14 @@ public final class ImageManager extends ControlExtension {
 
         // Set the camera mode to match the setup
         utils.setCameraMode(jpegQuality, resolution, recordingMode);
+        mUploadEncoder.setFrameIntervalMs(
+                recordingMode == SmartEyeglassControl.Intents.CAMERA_MODE_JPG_STREAM_HIGH_RATE ? 67 : 133);
+
+        // Let the frame pipeline decode straight from the camera resolution to the detector input size
+        Point pictureSize = SmartEyeglassControlUtils.getPictureSize(utils.getCameraResolution());
+        if (pictureSize != null) {
+            mFramePipeline.setPictureSize(pictureSize.x, pictureSize.y);
+        }
 
         cameraStarted = false;
 
@@ -400,18 +514,42 @@ public final class ImageManager extends ControlExtension {
             Log.d(Constants.IMAGE_MANAGER_TAG, "onPause() : stopCamera");
             cleanupCamera();
         }
+        // Don't leave stale frames behind for when the camera restarts
+        PooledClassifier classifier = mClassifierLoader.getIfReady();
+        if (classifier != null) {
+            classifier.clear();
+        }
     }
 
     // Clean up data structures on termination.
     @Override
     public void onDestroy() {
         utils.deactivate();
+        mFramePipeline.quit();
+        PreferenceManager.getDefaultSharedPreferences(context).unregisterOnSharedPreferenceChangeListener(mServersListener);
+        mNavigationClient.shutdown();
+        mBus.displaySizes.clearReceiver(mDisplaySizeReceiver);
+        mBus.serverResults.clearReceiver(mServerResultReceiver);
+        mBus.serverResults.clear();
+        mBus.beeps.clearReceiver(mBeepReceiver);
+        // Let a beep that is being played finish with the tracks before they are freed
+        final AudioCueEngine cueEngine = mCueEngine;
+        new Handler(mBeepThread.getLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                cueEngine.release();
+            }
+        });
+        mBeepThread.quitSafely();
+        // Stops the detection threads and releases any frames still waiting for them (or, if the classifier is still
+        // loading, closes it as soon as it has loaded)
+        mClassifierLoader.close();
     }
 
     // Sounds beep in background thread, then sends message back to handler with the specified
     // delay (beepDelay) in order to emit next beep
     private void playNextSound() {
-        mBeepExecutor.execute(new BeepRunnable());
+        mBus.beeps.post(mDangerLevel);
         Log.e(Constants.IMAGE_MANAGER_TAG, "In playNextSound: serverAvailable = " + serverAvailable);
         if (serverAvailable) {
             Message msg = mHandler.obtainMessage(Constants.PLAY_BEEP_SOUND);
@@ -419,6 +557,78 @@ public final class ImageManager extends ControlExtension {
         }
     }
 
+    // Runs on the UI thread once ImageResultActivity's overlay has been laid out
+    private void onDisplaySize(Point size) {
+        DISPLAY_SIZE.x = size.x;
+        DISPLAY_SIZE.y = size.y;
+        mTracker.setFrameConfiguration(INPUT_SIZE, INPUT_SIZE, 0);
+        // DISPLAY_SIZE is known now, so frames can be handed to the classifier
+        imageViewReceived = true;
+        Log.d(Constants.IMAGE_MANAGER_TAG, "Received overlay size " + size.x + "x" + size.y);
+    }
+
+    // Runs on the UI thread for the newest result from the server
+    private void onServerResult(ServerResult result) {
+        switch (result.mDangerLevel) {
+            case 0:
+                Log.e(Constants.IMAGE_MANAGER_TAG, "Updating beep to clear");
+                Log.e(Constants.IMAGE_MANAGER_TAG, "Objects (server): " + result.mDetections.toString());
+                beepDelay = 1500; // TODO: Fine-tune beep delay
+                break;
+            case 1:
+                Log.e(Constants.IMAGE_MANAGER_TAG, "Updating beep to careful");
+                speakResult(result);
+                beepDelay = 750;
+                break;
+            case 2:
+                Log.e(Constants.IMAGE_MANAGER_TAG, "Updating beep to dangerous");
+                speakResult(result);
+                beepDelay = 300;
+                break;
+            default:
+                Log.e(Constants.IMAGE_MANAGER_TAG, "Unknown danger level " + result.mDangerLevel);
+                result.recycle();
+                return;
+        }
+        mDangerLevel = result.mDangerLevel;
+        mTracer.mark(result.mTraceId, FrameTracer.CUE, System.nanoTime());
+        result.recycle();
+    }
+
+    // Reads out the danger side (when it changed) and the objects found, every third careful or dangerous result
+    private void speakResult(ServerResult result) {
+        ArrayList<Detection> objects = result.mDetections;
+        Log.e(Constants.IMAGE_MANAGER_TAG, "Objects (server): " + objects.toString());
+        if(speakCounter % 3 == 0) {
+            if(!result.mDangerSide.equals(dangerSide)) {
+                convertTextToSpeech(result.mDangerSide);
+                dangerSide = result.mDangerSide;
+            }
+            for (Detection object : objects) {
+                convertTextToSpeech(object.getLabel());
+            }
+        }
+        speakCounter++;
+    }
+
+    private void initTextToSpeech() {
+        mTextToSpeech = new TextToSpeech(context, new TextToSpeech.OnInitListener() {
+            @Override
+            public void onInit(int status) {
+                if(status == TextToSpeech.SUCCESS) {
+                    int result = mTextToSpeech.setLanguage(Locale.ENGLISH);
+                    if(result == TextToSpeech.LANG_MISSING_DATA || result == TextToSpeech.LANG_NOT_SUPPORTED){
+                        Log.e("error", "This Language is not supported");
+                    } else {
+                        Log.e("success", "We good!!!");
+                    }
+                } else {
+                    Log.e("error", "Initialization failed");
+                }
+            }
+        });
+    }
+
     private void convertTextToSpeech(String text) {
         if(text==null||"".equals(text))
         {
@@ -444,55 +654,93 @@ public final class ImageManager extends ControlExtension {
             return;
         }
 
-        if ((event.getData() != null) && ((event.getData().length) > 0)) {
-            byte[] data = event.getData();
+        if (event.getDataLength() > 0) {
+            mTracer.markReceived(event.getFrameId(), event.getTimestamp());
             imageCounter++;
             Log.d(Constants.IMAGE_MANAGER_TAG, "Camera frame was received : #" + imageCounter);
 
-            // imageCounter is continuously updated on SmartEyeGlass display
-            updateDisplay();
-            Log.e(Constants.IMAGE_MANAGER_TAG, "serverAvailable: " + serverAvailable);
-            if (serverAvailable) {
-                // Send image bytes to socket thread to be sent to server
-                ClientSocketThread.mPictureHandler.obtainMessage(Constants.STREAMED_IMAGE_READY_FOR_SERVER, data).sendToTarget();
-            } else {
+            // imageCounter is continuously updated on SmartEyeGlass display (drawn on the UI thread, since that is
+            // where the camera state lives)
+            mHandler.post(mUpdateDisplayRunnable);
+
+            // Decode the JPEG once on this thread; onFrameDecoded() fans it out from here
+            mFramePipeline.process(event);
+        } else {
+            Log.e(Constants.IMAGE_MANAGER_TAG, "Data was null or already invalid");
+        }
+    }
+
+    // Runs on the frame pipeline thread for each decoded camera frame. jpeg is the pooled buffer holding the
+    // original JPEG - only valid during this call unless retained, so every consumer that hands it to another
+    // thread takes its own reference
+    private void onFrameDecoded(DecodedFrame frame, FrameBuffer jpeg) {
+        mTracer.mark(frame.getFrameId(), FrameTracer.DECODED, frame.getDecodedTime());
+        long decodedTime = frame.getDecodedTime() / 1000000;
+        boolean detecting = false;
+        if (mSceneChangeDetector.hasChanged(frame.getBitmap(), decodedTime)) {
+            // Until detection is due again the device counts as busy, so the frame goes to the server if there is one
+            PooledClassifier classifier = decodedTime - mLastDetectionTime >= mDetectionIntervalMs
+                    ? getClassifierIfReady() : null;
+            int route = mOffloadScheduler.route(serverAvailable, classifier != null, System.nanoTime());
+            Log.e(Constants.IMAGE_MANAGER_TAG, "serverAvailable: " + serverAvailable + ", route: " + route);
+            if ((route & OffloadScheduler.SERVER) != 0) {
+                // Send image bytes to socket thread to be sent to server (re-encoded to fit the uplink if configured)
+                FrameBuffer upload = mUploadEncoder.encode(mFramePipeline.getDecodedPicture(), jpeg);
+                mLastUploadBytes = upload.getLength();
+                mNavigationClient.submitFrame(upload, frame.getFrameId());
+            }
+            if ((route & OffloadScheduler.DEVICE) != 0) {
                 // Run object detection on client device
                 // TODO: Look into implementing depth prediction on mobile
-                runObjectDetection(data);
+                runObjectDetection(classifier, frame);
+                mLastDetectionTime = decodedTime;
+                detecting = true;
+            }
+            if (route != OffloadScheduler.NONE) {
+                // Later frames only need processing if they differ from this one
+                mSceneChangeDetector.accept();
+            }
+        } else if (serverAvailable) {
+            // Nothing has changed since the last frame, so the last results (and beep rate) still hold
+            mSceneChangeDetector.addSavedBytes(mLastUploadBytes);
+            if (mSceneChangeDetector.getSkippedCount() % 100 == 0) {
+                Log.d(Constants.IMAGE_MANAGER_TAG, mSceneChangeDetector.getStatString());
             }
+        }
+        if (!detecting) {
+            // Keep the boxes moving with the objects they track
+            mDetectionResultHandler.onFrameWithoutDetection(frame);
+        }
 
-            // While object detection and depth prediction is occurring, we continue to update image
-            // view in ImageResultActivity with streamed images
-            ImageResultActivity.mHandler.obtainMessage(Constants.STREAMED_IMAGE_READY, Bitmap.createScaledBitmap(BitmapFactory.decodeByteArray(data, 0, data.length), INPUT_SIZE, INPUT_SIZE, true)).sendToTarget();
-        } else {
-            Log.e(Constants.IMAGE_MANAGER_TAG, "Data was null or already invalid");
+        // While object detection and depth prediction is occurring, we continue to update image
+        // view in ImageResultActivity with streamed images (the UI thread only has to show the bitmap)
+        // (ImageResultActivity releases the frame once a newer one is shown, the bus if it never got to it).
+        // The activity only receives while it is visible, so in the background this costs nothing
+        if (mBus.previewFrames.hasReceiver()) {
+            mBus.previewFrames.post(frame.retain());
+        }
+        if (++mDecodedCount % 100 == 0) {
+            Log.d(Constants.IMAGE_MANAGER_TAG, "Bus " + mBus.getStatString());
         }
     }
 
-    private void runObjectDetection(byte[] data) {
-        // If the ImageResultsActivity (and its corresponding ImageView) had not been received in handler,
-        // then DISPLAY_SIZE will not have been initialized yet, so we send this message to ImageResultActivity
+    // Returns the classifier if frames can be run through object detection on the device, null if not (yet)
+    private PooledClassifier getClassifierIfReady() {
+        // Until ImageResultActivity has sent the size of its overlay, there is nothing to show the boxes on, so frames
+        // are only handed to the classifier once it has been received
         if (!imageViewReceived) {
-            ImageResultActivity.mHandler.obtainMessage(Constants.REQUEST_FOR_IMAGE_VIEW_REFERENCE, mHandler).sendToTarget();
+            return null;
         }
+        // Null while the model is still loading (or if it failed to load)
+        return mClassifierLoader.getIfReady();
+    }
 
-        // readyForNextImage is only true when handler received ImageResultActivity reference
-        if (readyForNextImage) {
-            if (!imageViewReceived) {
-                // Need to release UI thread so it can receive message from ImageResultActivity and set imageViewReceived flag to true
-                return; // Though we really should never enter this if-statement
-            }
-            // Use Executor to execute task (Runnable) that runs object detection on image from SmartEyeGlass camera
-            mExecutor.execute(new ProcessImageRunnable(mClassifier, mTracker, mHandler, DISPLAY_SIZE, data, imageCounter));
-
-            // Processing image, so thread is busy and shouldn't accept next camera image. If it did, then the work
-            // queue would begin to fill with the next camera images. The object detection thread, after finishing the last
-            // image, would move onto the next image in queue, which at that point would be several frames behind where the
-            // camera is currently. So we would waste a lot of time processing images that are in the past. Instead, after
-            // the thread is finished processing an image, we get the most updated image from camera by only accepting new
-            // images when object detection thread is free.
-            readyForNextImage = false;
-        }
+    private void runObjectDetection(PooledClassifier classifier, DecodedFrame frame) {
+        // Hand the frame to the next detection thread in line. If that thread is still busy with an earlier frame,
+        // the frame already waiting for it (if any) is replaced and released, so no thread works through a backlog
+        // of frames that are several frames behind the camera. The classifier releases our reference once it is
+        // done with the frame (see DetectionResultHandler.onFrameDone()).
+        classifier.submit(frame.getBitmap(), frame.retain());
     }
 
     /**
@@ -1,54 +1,129 @@
 package com.sony.smarteyeglass.extension.cameranavigation;
 
-import android.graphics.Bitmap;
-import android.os.Handler;
+import android.graphics.Point;
 import android.os.Looper;
-import android.os.Message;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.util.Log;
+import android.view.Choreographer;
 import android.widget.ImageView;
+import com.sony.smarteyeglass.extension.cameranavigation.tflite.OverlayBoxes;
 
 public class ImageResultActivity extends AppCompatActivity {
 
-    // Handler to receive messages from ImageManager and ProcessImageRunnable
-    public static Handler mHandler;
+    private final NavigationBus mBus = NavigationBus.get();
+
+    private ImageView mImageView;
+    private BoundingBoxView mOverlay;
+
+    // Frame currently shown in the image view. Its bitmap is pooled, so it is released once a newer frame replaces it
+    private DecodedFrame mShownFrame;
+
+    // Newest frame received since the last vsync, shown on the next one. A frame that is replaced before then is
+    // released without ever being shown, so the preview never asks more of the UI than the display can show
+    private DecodedFrame mPendingFrame;
+    private boolean mFrameCallbackPosted;
+
+    // Preview frames shown and skipped while the activity was visible, for the log
+    private int mShownCount;
+    private int mSkippedCount;
+
+    // Receive camera images from ImageManager (only while the activity is visible)
+    private final MessageChannel.Receiver<DecodedFrame> mFrameReceiver = new MessageChannel.Receiver<DecodedFrame>() {
+        @Override
+        public void onMessage(DecodedFrame frame) {
+            if (mPendingFrame != null) {
+                mPendingFrame.release();
+                mSkippedCount++;
+            }
+            mPendingFrame = frame;
+            if (!mFrameCallbackPosted) {
+                Choreographer.getInstance().postFrameCallback(mShowFrame);
+                mFrameCallbackPosted = true;
+            }
+        }
+    };
+
+    // Shows the newest frame at the start of a display frame
+    private final Choreographer.FrameCallback mShowFrame = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFrameCallbackPosted = false;
+            if (mPendingFrame == null) {
+                return;
+            }
+            mImageView.setImageBitmap(mPendingFrame.getBitmap());
+            if (mShownFrame != null) {
+                mShownFrame.release();
+            }
+            mShownFrame = mPendingFrame;
+            mPendingFrame = null;
+            mShownCount++;
+        }
+    };
+
+    // Receive bounding boxes from DetectionResultHandler (or null from ImageManager to clear them), while visible
+    private final MessageChannel.Receiver<OverlayBoxes> mOverlayReceiver = new MessageChannel.Receiver<OverlayBoxes>() {
+        @Override
+        public void onMessage(OverlayBoxes boxes) {
+            mOverlay.setBoxes(boxes);
+            Log.d(Constants.IMAGE_RESULT_ACTIVITY_TAG, boxes != null ? "Drew bounding boxes in overlay"
+                    : "Cleared bounding boxes");
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_image_result);
 
-        final ImageView imageView = (ImageView) findViewById(R.id.camera_image);
-        final ImageView overlay = (ImageView) findViewById(R.id.overlay);
+        mImageView = (ImageView) findViewById(R.id.camera_image);
+        mOverlay = (BoundingBoxView) findViewById(R.id.overlay);
 
-        mHandler = new Handler(Looper.getMainLooper()) {
-            // Receive camera images from ImageManager, bounding boxes from ProcessImageRunnable, and
-            // request for activity reference from ImageManger
+        // Tell ImageManager how large bounding boxes should be drawn, once the overlay has been laid out
+        mOverlay.post(new Runnable() {
             @Override
-            public void handleMessage(Message msg) {
-                switch(msg.what) {
-                    case Constants.STREAMED_IMAGE_READY:
-                        imageView.setImageBitmap((Bitmap)msg.obj);
-                        Log.d(Constants.IMAGE_RESULT_ACTIVITY_TAG, "Set background to image stream");
-                        break;
-                    case Constants.BOUNDING_BOXES_READY:
-                        overlay.setImageBitmap((Bitmap)msg.obj);
-                        Log.d(Constants.IMAGE_RESULT_ACTIVITY_TAG, "Drew bounding boxes in overlay");
-                        break;
-                    case Constants.CLEAR_BOUNDING_BOXES:
-                        overlay.setImageBitmap(null);
-                        Log.d(Constants.IMAGE_RESULT_ACTIVITY_TAG, "Cleared bounding boxes");
-                        break;
-                    case Constants.REQUEST_FOR_IMAGE_VIEW_REFERENCE:
-                        ((Handler)msg.obj).obtainMessage(Constants.IMAGE_VIEW_REFERENCE_READY, overlay).sendToTarget();
-                        Log.d(Constants.IMAGE_RESULT_ACTIVITY_TAG, "Reference to ImageResultActivity passed to ImageManager");
-                        break;
-                    default:
-                        Log.e(Constants.IMAGE_RESULT_ACTIVITY_TAG, "Message status not recognized, ignoring frame");
-                        break;
-                }
+            public void run() {
+                mBus.displaySizes.post(new Point(mOverlay.getWidth(), mOverlay.getHeight()));
+                Log.d(Constants.IMAGE_RESULT_ACTIVITY_TAG, "Overlay size passed to ImageManager");
             }
-        };
+        });
+    }
+
+    // Frames and boxes are only sent while someone can see them: ImageManager skips the preview work altogether while
+    // the activity is in the background or the screen is off, which leaves the CPU to detection
+    @Override
+    protected void onStart() {
+        super.onStart();
+        mShownCount = 0;
+        mSkippedCount = 0;
+        mBus.previewFrames.setReceiver(Looper.getMainLooper(), mFrameReceiver);
+        mBus.overlays.setReceiver(Looper.getMainLooper(), mOverlayReceiver);
+    }
+
+    @Override
+    protected void onStop() {
+        mBus.previewFrames.clearReceiver(mFrameReceiver);
+        mBus.overlays.clearReceiver(mOverlayReceiver);
+        // Nobody will show these now
+        mBus.previewFrames.clear();
+        mBus.overlays.clear();
+        Choreographer.getInstance().removeFrameCallback(mShowFrame);
+        mFrameCallbackPosted = false;
+        if (mPendingFrame != null) {
+            mPendingFrame.release();
+            mPendingFrame = null;
+        }
+        // The frame's bitmap goes back to the decoder, so the view must let go of it first. The boxes would be stale
+        // by the time the activity is back
+        mImageView.setImageDrawable(null);
+        if (mShownFrame != null) {
+            mShownFrame.release();
+            mShownFrame = null;
+        }
+        mOverlay.setBoxes(null);
+        Log.d(Constants.IMAGE_RESULT_ACTIVITY_TAG, "Preview stopped; showed " + mShownCount + " frames, skipped "
+                + mSkippedCount);
+        super.onStop();
     }
 }
@@ -0,0 +1,105 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+// Histogram of the most recent latency samples. Samples fall into exponentially sized buckets (each about 25%
+// wider than the one before, from 1ms up to about a minute), so percentiles are accurate to within one bucket. Only
+// the last windowSize samples are counted: when a new sample comes in, the oldest one is taken back out. Adding a
+// sample and reading a percentile don't allocate. Not thread-safe.
+public class LatencyHistogram {
+
+    private static final double BUCKET_RATIO = 1.25;
+    private static final int NUM_BUCKETS = 50;
+
+    // Upper bound (inclusive, in microseconds) of each bucket; the last bucket also takes everything bigger
+    private static final long[] BUCKET_LIMITS = new long[NUM_BUCKETS];
+
+    static {
+        double limit = 1000;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            BUCKET_LIMITS[i] = (long) limit;
+            limit *= BUCKET_RATIO;
+        }
+    }
+
+    private final int[] mCounts = new int[NUM_BUCKETS];
+
+    // The samples in the window, as bucket indexes, oldest at mNext once the window is full
+    private final byte[] mWindow;
+    private int mNext;
+    private int mSize;
+
+    private long mTotalCount;
+    private long mMaxMicros;
+
+    public LatencyHistogram(int windowSize) {
+        mWindow = new byte[windowSize];
+    }
+
+    public void add(long micros) {
+        int bucket = bucketOf(micros);
+        if (mSize == mWindow.length) {
+            mCounts[mWindow[mNext]]--;
+        } else {
+            mSize++;
+        }
+        mWindow[mNext] = (byte) bucket;
+        mNext = (mNext + 1) % mWindow.length;
+        mCounts[bucket]++;
+        mTotalCount++;
+        mMaxMicros = Math.max(mMaxMicros, micros);
+    }
+
+    // Number of samples currently in the window
+    public int getCount() {
+        return mSize;
+    }
+
+    // Number of samples ever added
+    public long getTotalCount() {
+        return mTotalCount;
+    }
+
+    // Largest sample ever added, in microseconds
+    public long getMaxMicros() {
+        return mMaxMicros;
+    }
+
+    // Latency (in microseconds) that fraction (0..1] of the samples in the window are at or below, rounded up to
+    // the bucket's upper bound. 0 if there are no samples
+    public long getPercentile(double fraction) {
+        if (mSize == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(fraction * mSize);
+        int seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                return BUCKET_LIMITS[i];
+            }
+        }
+        return BUCKET_LIMITS[NUM_BUCKETS - 1];
+    }
+
+    public void clear() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            mCounts[i] = 0;
+        }
+        mNext = 0;
+        mSize = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "p50=" + getPercentile(0.5) / 1000 + "ms p95=" + getPercentile(0.95) / 1000
+                + "ms p99=" + getPercentile(0.99) / 1000 + "ms (" + mSize + " samples)";
+    }
+
+    private static int bucketOf(long micros) {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            if (micros <= BUCKET_LIMITS[i]) {
+                return i;
+            }
+        }
+        return NUM_BUCKETS - 1;
+    }
+}
@@ -0,0 +1,182 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.os.Handler;
+import android.os.Looper;
+
+// A bounded queue of messages of one type, delivered in order on the Looper of whoever receives them (see
+// NavigationBus for the channels the app uses). Unlike posting Messages to a Handler, a channel never holds more than
+// its capacity, and what happens when a message arrives at a full channel is up to the channel:
+//  - DROP_OLDEST: the messages in between matter too, so up to capacity of them wait their turn and only the oldest
+//    one makes room (and is recycled),
+//  - COALESCE: only the newest message matters, so it replaces the one waiting (the capacity is always 1).
+// Either way a sender never waits, whatever the receiver is doing.
+// Messages sent while there is no receiver wait (within the capacity) until one is set. Messages a channel drops or
+// clears are handed to its Recycler, so pooled objects go back to their pool; delivered ones belong to the receiver.
+// Messages may be null. post() may be called from any thread.
+public class MessageChannel<T> {
+
+    public enum Overflow {
+        DROP_OLDEST,
+        COALESCE
+    }
+
+    // Takes back a message the channel dropped or cleared, e.g. to return it to its pool
+    public interface Recycler<T> {
+        void recycle(T message);
+    }
+
+    // Called on the receiving Looper's thread for each message, in the order they were posted
+    public interface Receiver<T> {
+        void onMessage(T message);
+    }
+
+    private final String mName;
+    private final Recycler<T> mRecycler;
+
+    // Ring buffer of waiting messages
+    private final Object[] mItems;
+    private int mHead;
+    private int mCount;
+
+    private Receiver<T> mReceiver;
+    private Handler mHandler;
+    private boolean mDrainScheduled;
+
+    // Metrics: the most messages that were ever waiting at once, and what happened to the messages posted
+    private int mMaxDepth;
+    private long mPostedCount;
+    private long mDeliveredCount;
+    private long mDroppedCount;
+
+    // Delivers the waiting messages on the receiver's thread. Stops as soon as the receiver moved to another
+    // Looper (setReceiver() schedules a new drain there)
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                T message;
+                Receiver<T> receiver;
+                synchronized (MessageChannel.this) {
+                    if (mHandler == null || mHandler.getLooper() != Looper.myLooper()) {
+                        return;
+                    }
+                    if (mCount == 0) {
+                        mDrainScheduled = false;
+                        return;
+                    }
+                    message = removeOldest();
+                    receiver = mReceiver;
+                    mDeliveredCount++;
+                }
+                receiver.onMessage(message);
+            }
+        }
+    };
+
+    public MessageChannel(String name, int capacity, Overflow overflow, Recycler<T> recycler) {
+        mName = name;
+        mRecycler = recycler;
+        mItems = new Object[overflow == Overflow.COALESCE ? 1 : capacity];
+    }
+
+    // Delivers the messages of this channel to receiver on looper from now on, starting with any that are waiting
+    public synchronized void setReceiver(Looper looper, Receiver<T> receiver) {
+        if (mHandler != null) {
+            mHandler.removeCallbacks(mDrain);
+        }
+        mReceiver = receiver;
+        mHandler = new Handler(looper);
+        mDrainScheduled = false;
+        scheduleDrain();
+    }
+
+    // Stops delivering messages to receiver, if it still is the receiver. Messages posted from now on wait for the
+    // next receiver
+    public synchronized void clearReceiver(Receiver<T> receiver) {
+        if (mReceiver != receiver) {
+            return;
+        }
+        mHandler.removeCallbacks(mDrain);
+        mReceiver = null;
+        mHandler = null;
+        mDrainScheduled = false;
+    }
+
+    public synchronized boolean hasReceiver() {
+        return mReceiver != null;
+    }
+
+    // Sends message to the receiver, making room according to the channel's overflow policy if the channel is full
+    public void post(T message) {
+        T dropped = null;
+        synchronized (this) {
+            mPostedCount++;
+            if (mCount == mItems.length) {
+                dropped = removeOldest();
+                mDroppedCount++;
+            }
+            mItems[(mHead + mCount) % mItems.length] = message;
+            mCount++;
+            mMaxDepth = Math.max(mMaxDepth, mCount);
+            scheduleDrain();
+        }
+        recycle(dropped);
+    }
+
+    // Recycles all waiting messages without counting them as dropped, e.g. when the receiver goes away for good
+    public void clear() {
+        while (true) {
+            T message;
+            synchronized (this) {
+                if (mCount == 0) {
+                    return;
+                }
+                message = removeOldest();
+            }
+            recycle(message);
+        }
+    }
+
+    public synchronized int getDepth() {
+        return mCount;
+    }
+
+    public synchronized int getMaxDepth() {
+        return mMaxDepth;
+    }
+
+    public synchronized long getPostedCount() {
+        return mPostedCount;
+    }
+
+    public synchronized long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    public synchronized String getStatString() {
+        return mName + ": depth " + mCount + "/" + mItems.length + " (max " + mMaxDepth + "), " + mPostedCount
+                + " posted, " + mDeliveredCount + " delivered, " + mDroppedCount + " dropped";
+    }
+
+    @SuppressWarnings("unchecked")
+    private T removeOldest() {
+        T message = (T) mItems[mHead];
+        mItems[mHead] = null;
+        mHead = (mHead + 1) % mItems.length;
+        mCount--;
+        return message;
+    }
+
+    private void scheduleDrain() {
+        if (mHandler != null && mCount > 0 && !mDrainScheduled) {
+            mDrainScheduled = true;
+            mHandler.post(mDrain);
+        }
+    }
+
+    private void recycle(T message) {
+        if (mRecycler != null && message != null) {
+            mRecycler.recycle(message);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.graphics.Point;
+import com.sony.smarteyeglass.extension.cameranavigation.tflite.OverlayBoxes;
+
+// The channels over which the parts of the app running on different threads talk to each other: the camera (frame
+// pipeline thread), the detector threads, the network (NavigationClient's threads), the beeps and the UI
+// (ImageManager and ImageResultActivity on the main thread). ImageResultActivity and ImageManager are created
+// separately by the system, so they find each other through the single instance returned by get(). Every channel is
+// bounded, so a receiver that falls behind (or isn't there) costs a few dropped messages rather than a queue that
+// keeps on growing.
+public final class NavigationBus {
+
+    private static final NavigationBus sInstance = new NavigationBus();
+
+    // Camera frames for ImageResultActivity to show. Only the newest frame is worth showing, and a frame that is
+    // replaced goes back to FrameDecoder's pool
+    public final MessageChannel<DecodedFrame> previewFrames = new MessageChannel<>("previewFrames", 1,
+            MessageChannel.Overflow.COALESCE, new MessageChannel.Recycler<DecodedFrame>() {
+                @Override
+                public void recycle(DecodedFrame frame) {
+                    frame.release();
+                }
+            });
+
+    // Bounding boxes from DetectionResultHandler for ImageResultActivity to draw over the frames (null clears them).
+    // They are posted from the detector threads while the classifier pool holds its locks, so the sender must never
+    // wait for the UI: only the newest boxes are worth drawing, and replaced ones go back to the pool
+    public final MessageChannel<OverlayBoxes> overlays = new MessageChannel<>("overlays", 1,
+            MessageChannel.Overflow.COALESCE, new MessageChannel.Recycler<OverlayBoxes>() {
+                @Override
+                public void recycle(OverlayBoxes boxes) {
+                    if (boxes != null) {
+                        boxes.recycle();
+                    }
+                }
+            });
+
+    // Size of the view ImageResultActivity shows frames in, once it has been laid out, for ImageManager to scale
+    // bounding boxes to
+    public final MessageChannel<Point> displaySizes = new MessageChannel<>("displaySizes", 1,
+            MessageChannel.Overflow.COALESCE, null);
+
+    // Results from the server for ImageManager. Every result may carry a warning to speak, so a few can wait while the
+    // main thread is busy; only once it is that far behind does the oldest make way (and go back to the pool)
+    public final MessageChannel<ServerResult> serverResults = new MessageChannel<>("serverResults", 4,
+            MessageChannel.Overflow.DROP_OLDEST, new MessageChannel.Recycler<ServerResult>() {
+                @Override
+                public void recycle(ServerResult result) {
+                    result.recycle();
+                }
+            });
+
+    // Beeps for the audio thread to play, with the danger level they are for. Their rhythm is what tells the user how
+    // close danger is, so a beep that arrives while the last one is being started waits its turn rather than
+    // replacing it; only a beep thread that has fallen well behind skips the oldest
+    public final MessageChannel<Integer> beeps = new MessageChannel<>("beeps", 2,
+            MessageChannel.Overflow.DROP_OLDEST, null);
+
+    public static NavigationBus get() {
+        return sInstance;
+    }
+
+    private NavigationBus() {
+    }
+
+    public String getStatString() {
+        return previewFrames.getStatString() + "; " + overlays.getStatString() + "; "
+                + displaySizes.getStatString() + "; " + serverResults.getStatString() + "; " + beeps.getStatString();
+    }
+}
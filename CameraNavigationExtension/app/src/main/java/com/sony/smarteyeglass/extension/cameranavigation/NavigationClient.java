@@ -0,0 +1,744 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.sony.smarteyeglass.extension.util.FrameBuffer;
+
+// Connection to the navigation server. A single thread multiplexes both of the server's channels with a Selector:
+// the image channel (port 9002 by default), on which camera frames are uploaded and results come back, and the
+// status channel (port 9003 by default), which tells us whether the server is available. Connects are non-blocking
+// and retried with exponential backoff, and the thread sleeps in select() whenever there is nothing to send or
+// receive. Everything that happens is reported through the Listener.
+//
+// Which server is used comes from an EndpointRegistry: the servers are probed when the thread starts (and whenever
+// the list changes) and the best one is used. Probing (and resolving the servers' names) happens on worker threads,
+// so the connection in use isn't held up by it. If the server stays unavailable for FAILOVER_AFTER_MS, it is
+// demoted and the client moves on to the next best.
+//
+// How the status channel decides whether the server is available depends on the heartbeat interval. With no
+// heartbeat (for servers that only know the original protocol) the server is available from its READY line until
+// the connection drops, and "Hello" is written every second so a dead server gets noticed. With a heartbeat the
+// client sends "PING <n>" lines at that interval and the server answers each with "PONG <n>"; the round trips feed a
+// HeartbeatMonitor, which can also take the server out of use while the connection stays up.
+public class NavigationClient extends Thread implements ServerMessageDecoder.Listener {
+
+    // Called on the client thread
+    public interface Listener {
+        // The server said it is ready
+        void onServerAvailable();
+
+        // The status channel was lost, or (with a heartbeat) the server stopped answering or got too slow
+        void onServerUnavailable();
+
+        // An image was written to the socket in micros. waitedForNetwork is false if it went into the socket's
+        // (small, see UPLOAD_SEND_BUFFER_SIZE) send buffer in one go, i.e. the link kept up with it
+        void onImageSent(int bytes, long micros, boolean waitedForNetwork);
+
+        // Results for one frame, latencyMicros after its upload started. The listener takes ownership of result
+        // and recycles it when done
+        void onResult(ServerResult result, long latencyMicros);
+    }
+
+    // Delay before reconnecting after a failed connect or a lost connection, doubled after every failure
+    private static final long MIN_BACKOFF_MS = 250;
+    private static final long MAX_BACKOFF_MS = 8000;
+
+    // How long the server in use may be unavailable before we try another one
+    private static final long FAILOVER_AFTER_MS = 3000;
+
+    // How often the status channel says hello to the server when there is no heartbeat
+    private static final long HELLO_INTERVAL_MS = 1000;
+
+    // Send buffer of the image channel. Kept small so that writing an image takes about as long as the network
+    // takes to carry it, which is what the upload throughput is measured from
+    private static final int UPLOAD_SEND_BUFFER_SIZE = 16 * 1024;
+
+    // Log the heartbeat round trip times after this many pongs
+    private static final int LOG_ROUND_TRIPS_EVERY = 20;
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final byte[] HELLO = "Hello".getBytes(US_ASCII);
+
+    private final Listener mListener;
+
+    // Protocol used on the image channel (ServerProtocol.TEXT, BINARY or PIPELINED)
+    private final String mProtocol;
+    private final boolean mPipelined;
+    private final ServerMessageDecoder mDecoder;
+
+    // Frames uploaded in pipelined mode whose results haven't come back yet
+    private final UploadWindow mUploadWindow;
+    private int mNextFrameId;
+
+    // Latest image waiting to be sent to server (null when nothing is pending). The frame pipeline thread swaps new
+    // frames in and releases the one it replaced; this thread takes ownership when it starts sending
+    private final AtomicReference<FrameBuffer> mPendingImage = new AtomicReference<>();
+
+    // SmartEyeGlass frame ID of the pending image, for FrameTracer (swapped along with it while locking mPendingImage)
+    private int mPendingTraceId;
+
+    // Where uploads and results mark the frames they are for
+    private final FrameTracer mTracer = FrameTracer.get();
+
+    private final Endpoint mImageEndpoint = new Endpoint(16 * 1024);
+    private final Endpoint mStatusEndpoint = new Endpoint(256);
+
+    // Servers to choose from, the one in use (null if there are none) and the list version it was chosen from
+    private final EndpointRegistry mRegistry;
+    private EndpointRegistry.Server mServer;
+    private int mRegistryVersion;
+
+    // Probes of the servers run on worker threads, so the connection in use carries on meanwhile. Probes started,
+    // the newest one that has finished (set by the probe's thread) and the newest one whose result has been used
+    private int mProbesStarted;
+    private final AtomicInteger mProbesFinished = new AtomicInteger();
+    private int mProbesUsed;
+
+    // Since when the server in use has been unavailable (SystemClock.elapsedRealtime(), 0 while it is available)
+    private long mUnavailableSince;
+
+    private volatile Selector mSelector;
+    private volatile boolean mRunning = true;
+
+    private boolean mServerAvailable = false;
+
+    // Whether the status channel has said READY since it connected
+    private boolean mStatusReady = false;
+
+    // Heartbeat on the status channel (null when the server only gets "Hello"s)
+    private final HeartbeatMonitor mHeartbeat;
+    private final long mStatusIntervalMs;
+    private int mNextPingSeq;
+    private int mPongCount;
+
+    // Image channel output: small control messages (hello, image size, frame header) go out first, followed by the
+    // image being uploaded, if any. mControl is kept flipped (ready to be written out)
+    private final ByteBuffer mControl = ByteBuffer.allocate(64);
+    private ByteBuffer mImageData;
+    private final ByteBuffer[] mWriteBuffers = new ByteBuffer[2];
+
+    // Image whose size has been sent in stop-and-wait mode (text/binary) and which is waiting for the server to
+    // acknowledge it before its bytes are sent
+    private FrameBuffer mAwaitingAck;
+    private long mAwaitingAckSince;
+    private int mAwaitingAckTraceId;
+
+    // When the upload of the last image sent in stop-and-wait mode started (System.nanoTime()). The server answers
+    // an image before acknowledging the next one's size, so a result is always for this image
+    private long mUploadStartTime;
+    private int mUploadTraceId;
+
+    // Image currently being written to the image channel (and its trace ID), when that started and how many writes
+    // it took so far
+    private FrameBuffer mSending;
+    private int mSendingTraceId;
+    private long mSendStartTime;
+    private int mSendWrites;
+
+    private long mNextHelloTime;
+
+    // One of the server's two channels
+    private static final class Endpoint {
+        int port;
+        final ByteBuffer readBuffer;
+        SocketChannel channel;
+        SelectionKey key;
+        boolean connected;
+        long backoffMs = MIN_BACKOFF_MS;
+        long nextAttemptTime;
+
+        // Bytes that didn't fit in the socket's send buffer (status channel only)
+        ByteBuffer pendingWrite;
+
+        Endpoint(int readBufferSize) {
+            this.readBuffer = ByteBuffer.allocate(readBufferSize);
+        }
+    }
+
+    // servers is the list of servers to choose from (see EndpointRegistry), heartbeatIntervalMs how often the status
+    // channel pings the server (0 for the original "Hello" health check), and maxRoundTripMs the p95 ping round trip
+    // time above which the server is taken out of use
+    public NavigationClient(Listener listener, String servers, String protocol, int uploadWindow,
+                            long heartbeatIntervalMs, long maxRoundTripMs) {
+        super("NavigationClient");
+        mRegistry = new EndpointRegistry(servers);
+        mHeartbeat = heartbeatIntervalMs > 0 ? new HeartbeatMonitor(maxRoundTripMs) : null;
+        mStatusIntervalMs = heartbeatIntervalMs > 0 ? heartbeatIntervalMs : HELLO_INTERVAL_MS;
+        mListener = listener;
+        mProtocol = protocol;
+        mPipelined = ServerProtocol.PIPELINED.equals(protocol);
+        mUploadWindow = new UploadWindow(uploadWindow);
+        mDecoder = ServerMessageDecoder.create(protocol);
+        mControl.flip();
+    }
+
+    // Queues a camera image for upload, replacing (and releasing) any image that hasn't started uploading yet.
+    // Takes ownership of image. traceId is the SmartEyeGlass frame ID it was taken from. Never blocks
+    public void submitFrame(FrameBuffer image, int traceId) {
+        FrameBuffer replaced;
+        synchronized (mPendingImage) {
+            replaced = mPendingImage.getAndSet(image);
+            mPendingTraceId = traceId;
+        }
+        if (replaced != null) {
+            replaced.release();
+        }
+        Selector selector = mSelector;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    // Replaces the list of servers to choose from. The client probes them and switches to the best one without
+    // waiting for the current one to fail. May be called from any thread
+    public void setServers(String servers) {
+        mRegistry.setServers(servers);
+        Selector selector = mSelector;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    // Closes both channels and stops the thread
+    public void shutdown() {
+        mRunning = false;
+        Selector selector = mSelector;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            mSelector = Selector.open();
+        } catch (IOException e) {
+            Log.e(Constants.NAVIGATION_CLIENT_TAG, "Unable to open selector: " + e.toString());
+            return;
+        }
+
+        try {
+            while (mRunning) {
+                long now = SystemClock.elapsedRealtime();
+                if (mRegistry.getVersion() != mRegistryVersion) {
+                    // First time round, or the list of servers changed
+                    mRegistryVersion = mRegistry.getVersion();
+                    startProbe();
+                } else if (mProbesFinished.get() == mProbesStarted && mProbesUsed != mProbesStarted) {
+                    // The newest probe is done: switch to whichever server it found best
+                    mProbesUsed = mProbesStarted;
+                    useServer(mRegistry.best(now), now);
+                } else if (mUnavailableSince != 0 && now - mUnavailableSince >= FAILOVER_AFTER_MS) {
+                    failOver(now);
+                }
+                connectIfDue(mImageEndpoint, now);
+                connectIfDue(mStatusEndpoint, now);
+                if (mStatusEndpoint.connected && now >= mNextHelloTime) {
+                    sayHello(now);
+                }
+                if (mServerAvailable && mImageEndpoint.connected) {
+                    queueNextImage();
+                }
+                updateImageInterest();
+
+                mSelector.select(getSelectTimeout(now));
+
+                Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Endpoint endpoint = (Endpoint) key.attachment();
+                    try {
+                        if (key.isValid() && key.isConnectable()) {
+                            finishConnect(endpoint);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(endpoint);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(endpoint);
+                        }
+                    } catch (IOException e) {
+                        disconnect(endpoint, e);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            Log.e(Constants.NAVIGATION_CLIENT_TAG, "Selector failed: " + e.toString());
+        } finally {
+            close(mImageEndpoint);
+            close(mStatusEndpoint);
+            FrameBuffer pending = mPendingImage.getAndSet(null);
+            if (pending != null) {
+                pending.release();
+            }
+            try {
+                mSelector.close();
+            } catch (IOException e) {
+                // Nothing left to do with it
+            }
+        }
+    }
+
+    // Switches to server (if it isn't the one in use already), dropping the connections to the old one
+    private void useServer(EndpointRegistry.Server server, long now) {
+        if (server == mServer) {
+            return;
+        }
+        Log.e(Constants.NAVIGATION_CLIENT_TAG, "Using server " + server);
+        close(mImageEndpoint);
+        close(mStatusEndpoint);
+        mStatusReady = false;
+        setServerAvailable(false);
+        mServer = server;
+        mUnavailableSince = now;
+        if (server != null) {
+            mImageEndpoint.port = server.imagePort;
+            mStatusEndpoint.port = server.statusPort;
+        }
+        for (Endpoint endpoint : new Endpoint[] {mImageEndpoint, mStatusEndpoint}) {
+            endpoint.backoffMs = MIN_BACKOFF_MS;
+            endpoint.nextAttemptTime = 0;
+        }
+    }
+
+    // The server in use has been unavailable for too long: rank it last for a while and move on to the next best
+    // (if there is no other server, it stays in use and we keep reconnecting to it). The servers are probed again
+    // too, in case they have moved (or the network has), which may pick another one once it is done
+    private void failOver(long now) {
+        mRegistry.demote(mServer, now);
+        mUnavailableSince = now;
+        useServer(mRegistry.best(now), now);
+        if (mProbesFinished.get() == mProbesStarted) {
+            startProbe();
+        }
+    }
+
+    // Starts probing the servers on worker threads; the selector is woken up when they are done
+    private void startProbe() {
+        final int probe = ++mProbesStarted;
+        mRegistry.probe(new Runnable() {
+            @Override
+            public void run() {
+                onProbeFinished(probe);
+            }
+        });
+    }
+
+    // Called on the probe's thread. Probes can finish out of order, and only the newest one counts
+    private void onProbeFinished(int probe) {
+        int finished = mProbesFinished.get();
+        while (probe > finished && !mProbesFinished.compareAndSet(finished, probe)) {
+            finished = mProbesFinished.get();
+        }
+        Selector selector = mSelector;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    // Starts a non-blocking connect if the endpoint is disconnected and its backoff has expired
+    private void connectIfDue(Endpoint endpoint, long now) {
+        if (mServer == null || endpoint.channel != null || now < endpoint.nextAttemptTime) {
+            return;
+        }
+        // Resolved by the probe, so this thread never waits for DNS
+        InetAddress address = mServer.getAddress();
+        if (address == null) {
+            disconnect(endpoint, new UnknownHostException(mServer.host));
+            return;
+        }
+        try {
+            endpoint.channel = SocketChannel.open();
+            endpoint.channel.configureBlocking(false);
+            if (endpoint == mImageEndpoint) {
+                endpoint.channel.socket().setSendBufferSize(UPLOAD_SEND_BUFFER_SIZE);
+            }
+            endpoint.key = endpoint.channel.register(mSelector, 0, endpoint);
+            if (connect(endpoint.channel, new InetSocketAddress(address, endpoint.port))) {
+                onConnected(endpoint);
+            } else {
+                endpoint.key.interestOps(SelectionKey.OP_CONNECT);
+            }
+        } catch (IOException e) {
+            disconnect(endpoint, e);
+        }
+    }
+
+    // SocketChannel.connect() reports some failures (an unresolvable host, say) as unchecked exceptions. They are
+    // just as much a failed connect as an IOException, and must not take the selector thread down
+    private static boolean connect(SocketChannel channel, InetSocketAddress address) throws IOException {
+        try {
+            return channel.connect(address);
+        } catch (RuntimeException e) {
+            throw new IOException("Cannot connect to " + address, e);
+        }
+    }
+
+    private void finishConnect(Endpoint endpoint) throws IOException {
+        if (endpoint.channel.finishConnect()) {
+            onConnected(endpoint);
+        }
+    }
+
+    private void onConnected(Endpoint endpoint) throws IOException {
+        Log.e(Constants.NAVIGATION_CLIENT_TAG, "Connected to server on port " + endpoint.port);
+        endpoint.connected = true;
+        endpoint.backoffMs = MIN_BACKOFF_MS;
+        endpoint.readBuffer.clear();
+        endpoint.key.interestOps(SelectionKey.OP_READ);
+
+        if (endpoint == mImageEndpoint) {
+            mDecoder.reset();
+            mUploadWindow.clear();
+            if (ServerProtocol.isBinary(mProtocol)) {
+                // Ask for binary results
+                queueControl(ServerProtocol.binaryHello(mPipelined ? ServerProtocol.FLAG_PIPELINED : 0));
+            }
+            if (mPipelined) {
+                // Frame headers are written while earlier frames are still unacknowledged; without this Nagle's
+                // algorithm would hold them back until the server's delayed ACK arrives
+                endpoint.channel.socket().setTcpNoDelay(true);
+            }
+        } else {
+            mStatusReady = false;
+            if (mHeartbeat != null) {
+                mHeartbeat.reset();
+                // Pings are tiny; don't let Nagle's algorithm add to their round trip time
+                endpoint.channel.socket().setTcpNoDelay(true);
+            }
+            mNextHelloTime = SystemClock.elapsedRealtime() + mStatusIntervalMs;
+        }
+    }
+
+    private void read(Endpoint endpoint) throws IOException {
+        if (endpoint.channel.read(endpoint.readBuffer) < 0) {
+            throw new IOException("Server closed the connection");
+        }
+        endpoint.readBuffer.flip();
+        if (endpoint == mImageEndpoint) {
+            // Complete messages come back through the ServerMessageDecoder.Listener methods below
+            mDecoder.decode(endpoint.readBuffer, this);
+        } else {
+            readStatus(endpoint.readBuffer);
+        }
+    }
+
+    // The status channel sends "READY" once connected, and "PONG <n>" for every ping
+    private void readStatus(ByteBuffer buffer) throws IOException {
+        int lineStart = buffer.position();
+        for (int i = lineStart; i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                String line = new String(buffer.array(), lineStart, i - lineStart, US_ASCII).trim();
+                if (line.startsWith("PONG ") && mHeartbeat != null) {
+                    onPong(line);
+                } else if (line.equals("READY")) {
+                    Log.e(Constants.NAVIGATION_CLIENT_TAG, "Ready Confirmation: " + line);
+                    mStatusReady = true;
+                    updateServerAvailable();
+                }
+                lineStart = i + 1;
+            }
+        }
+        buffer.position(lineStart);
+        buffer.compact();
+        if (!buffer.hasRemaining()) {
+            throw new ProtocolException("Status line too long");
+        }
+    }
+
+    private void write(Endpoint endpoint) throws IOException {
+        if (endpoint == mImageEndpoint) {
+            mWriteBuffers[0] = mControl;
+            mWriteBuffers[1] = mImageData;
+            endpoint.channel.write(mWriteBuffers, 0, mImageData != null ? 2 : 1);
+            if (mImageData != null) {
+                mSendWrites++;
+            }
+            if (mImageData != null && !mImageData.hasRemaining()) {
+                // Whole image written, hand the buffer back to the pool
+                long now = System.nanoTime();
+                mTracer.mark(mSendingTraceId, FrameTracer.UPLOADED, now);
+                mListener.onImageSent(mSending.getLength(), (now - mSendStartTime) / 1000, mSendWrites > 1);
+                mImageData = null;
+                releaseImage(mSending);
+                mSending = null;
+            }
+        } else if (endpoint.pendingWrite != null) {
+            endpoint.channel.write(endpoint.pendingWrite);
+            if (!endpoint.pendingWrite.hasRemaining()) {
+                endpoint.pendingWrite = null;
+                endpoint.key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private void onPong(String line) throws ProtocolException {
+        int seq;
+        try {
+            seq = Integer.parseInt(line.substring(5).trim());
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Bad pong: " + line);
+        }
+        mHeartbeat.onPong(seq, System.nanoTime());
+        if (++mPongCount % LOG_ROUND_TRIPS_EVERY == 0) {
+            Log.d(Constants.NAVIGATION_CLIENT_TAG, "Heartbeat round trips: " + mHeartbeat.getRoundTrips());
+        }
+        updateServerAvailable();
+    }
+
+    // Writes a "Hello", or a ping when there is a heartbeat
+    private void sayHello(long now) {
+        mNextHelloTime = now + mStatusIntervalMs;
+        Endpoint endpoint = mStatusEndpoint;
+        if (mHeartbeat != null && mStatusReady) {
+            int seq = mNextPingSeq++;
+            // Even if this ping can't be sent right now it counts towards the missed pings: a send buffer that
+            // isn't draining means the link is stuck
+            mHeartbeat.onPingSent(seq, System.nanoTime());
+            updateServerAvailable();
+            if (endpoint.pendingWrite == null) {
+                write(endpoint, ("PING " + seq + "\n").getBytes(US_ASCII));
+            }
+            return;
+        }
+        if (endpoint.pendingWrite != null) {
+            // The last one hasn't even gone out yet
+            return;
+        }
+        write(endpoint, HELLO);
+    }
+
+    // Writes bytes to the status channel, leaving whatever doesn't fit for when the channel is writable
+    private void write(Endpoint endpoint, byte[] bytes) {
+        try {
+            ByteBuffer hello = ByteBuffer.wrap(bytes);
+            endpoint.channel.write(hello);
+            if (hello.hasRemaining()) {
+                endpoint.pendingWrite = hello;
+                endpoint.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            disconnect(endpoint, e);
+        }
+    }
+
+    // Starts uploading the pending image if the protocol allows another one to be sent now
+    private void queueNextImage() {
+        if (mSending != null || mAwaitingAck != null) {
+            return;
+        }
+        if (mPipelined && mUploadWindow.isFull()) {
+            return;
+        }
+        FrameBuffer image;
+        int traceId;
+        synchronized (mPendingImage) {
+            image = mPendingImage.getAndSet(null);
+            traceId = mPendingTraceId;
+        }
+        if (image == null) {
+            return;
+        }
+        if (mPipelined) {
+            // Frame header and image go out back to back; the result is matched to the frame by its id
+            int frameId = mNextFrameId++;
+            queueControl(frameId, image.getLength());
+            startSending(image, traceId);
+            mUploadWindow.onSent(frameId, System.nanoTime(), traceId);
+        } else {
+            // Send the size and wait for the server to echo it before sending the image
+            queueControl(image.getLength());
+            mAwaitingAck = image;
+            mAwaitingAckSince = System.nanoTime();
+            mAwaitingAckTraceId = traceId;
+        }
+    }
+
+    private void startSending(FrameBuffer image, int traceId) {
+        mSending = image;
+        mSendingTraceId = traceId;
+        mSendStartTime = System.nanoTime();
+        mTracer.mark(traceId, FrameTracer.UPLOAD_STARTED, mSendStartTime);
+        mSendWrites = 0;
+        mImageData = ByteBuffer.wrap(image.getArray(), image.getOffset(), image.getLength());
+    }
+
+    private void queueControl(byte[] bytes) {
+        mControl.compact();
+        mControl.put(bytes);
+        mControl.flip();
+    }
+
+    private void queueControl(int value) {
+        mControl.compact();
+        mControl.putInt(value);
+        mControl.flip();
+    }
+
+    private void queueControl(int value1, int value2) {
+        mControl.compact();
+        mControl.putInt(value1).putInt(value2);
+        mControl.flip();
+    }
+
+    // Only ask the selector about writability while there is something to write, or it would wake us constantly
+    private void updateImageInterest() {
+        Endpoint endpoint = mImageEndpoint;
+        if (!endpoint.connected) {
+            return;
+        }
+        boolean writing = mControl.hasRemaining() || (mImageData != null && mImageData.hasRemaining());
+        endpoint.key.interestOps(writing ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private long getSelectTimeout(long now) {
+        long wakeUp = Long.MAX_VALUE;
+        if (mImageEndpoint.channel == null) {
+            wakeUp = Math.min(wakeUp, mImageEndpoint.nextAttemptTime);
+        }
+        if (mStatusEndpoint.channel == null) {
+            wakeUp = Math.min(wakeUp, mStatusEndpoint.nextAttemptTime);
+        } else if (mStatusEndpoint.connected) {
+            wakeUp = Math.min(wakeUp, mNextHelloTime);
+        }
+        if (mUnavailableSince != 0) {
+            wakeUp = Math.min(wakeUp, mUnavailableSince + FAILOVER_AFTER_MS);
+        }
+        if (wakeUp == Long.MAX_VALUE) {
+            // Nothing scheduled; select(0) sleeps until a channel is ready or wakeup() is called
+            return 0;
+        }
+        return Math.max(1, wakeUp - now);
+    }
+
+    // Closes the endpoint's channel and schedules a reconnect after its backoff, which doubles each time
+    private void disconnect(Endpoint endpoint, IOException cause) {
+        Log.e(Constants.NAVIGATION_CLIENT_TAG, "Connection on port " + endpoint.port + " lost or refused: " + cause.toString()
+                + ", retrying in " + endpoint.backoffMs + "ms");
+        close(endpoint);
+        endpoint.nextAttemptTime = SystemClock.elapsedRealtime() + endpoint.backoffMs;
+        endpoint.backoffMs = Math.min(endpoint.backoffMs * 2, MAX_BACKOFF_MS);
+        if (endpoint == mStatusEndpoint) {
+            mStatusReady = false;
+            setServerAvailable(false);
+        }
+    }
+
+    private void close(Endpoint endpoint) {
+        if (endpoint.key != null) {
+            endpoint.key.cancel();
+            endpoint.key = null;
+        }
+        if (endpoint.channel != null) {
+            try {
+                endpoint.channel.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+            endpoint.channel = null;
+        }
+        endpoint.connected = false;
+        endpoint.pendingWrite = null;
+
+        if (endpoint == mImageEndpoint) {
+            // Whatever was being sent is lost with the connection
+            mControl.clear();
+            mControl.flip();
+            mImageData = null;
+            releaseImage(mSending);
+            mSending = null;
+            releaseImage(mAwaitingAck);
+            mAwaitingAck = null;
+            mUploadWindow.clear();
+        }
+    }
+
+    private void updateServerAvailable() {
+        setServerAvailable(mStatusReady && (mHeartbeat == null || mHeartbeat.isHealthy()));
+    }
+
+    private void setServerAvailable(boolean available) {
+        if (available == mServerAvailable) {
+            return;
+        }
+        mServerAvailable = available;
+        mUnavailableSince = available ? 0 : SystemClock.elapsedRealtime();
+        if (available) {
+            mListener.onServerAvailable();
+        } else {
+            mListener.onServerUnavailable();
+        }
+    }
+
+    private static void releaseImage(FrameBuffer image) {
+        if (image != null) {
+            image.release();
+        }
+    }
+
+    @Override
+    public void onSizeAck(int responseSize) throws IOException {
+        // Only proceed if the original size sent and the response size received are equal, otherwise the
+        // connection is corrupted somehow (and we reconnect)
+        if (mPipelined || mAwaitingAck == null || mAwaitingAck.getLength() != responseSize) {
+            throw new ProtocolException("Unexpected size acknowledgement: " + responseSize);
+        }
+        startSending(mAwaitingAck, mAwaitingAckTraceId);
+        mAwaitingAck = null;
+        mUploadStartTime = mAwaitingAckSince;
+        mUploadTraceId = mAwaitingAckTraceId;
+        updateImageInterest();
+    }
+
+    @Override
+    public void onReady() {
+        Log.e(Constants.NAVIGATION_CLIENT_TAG, "Confirmation message: OK");
+    }
+
+    @Override
+    public void onResult(ServerResult result) {
+        long sendTime = mUploadStartTime;
+        result.mTraceId = mUploadTraceId;
+        if (mPipelined) {
+            sendTime = mUploadWindow.onResult(result.mFrameId);
+            if (sendTime < 0) {
+                // Not a frame we are waiting for (e.g. sent on a previous connection)
+                Log.e(Constants.NAVIGATION_CLIENT_TAG, "Dropping result for unknown frame " + result.mFrameId);
+                result.recycle();
+                return;
+            }
+            Log.d(Constants.NAVIGATION_CLIENT_TAG, "Result for frame " + result.mFrameId + " after "
+                    + (System.nanoTime() - sendTime) / 1000000 + "ms, " + mUploadWindow.getInFlightCount()
+                    + " frames in flight, " + mUploadWindow.getSkippedCount() + " skipped by server");
+            result.mTraceId = mUploadWindow.getResultTraceId();
+        }
+        long now = System.nanoTime();
+        mTracer.mark(result.mTraceId, FrameTracer.SERVER_RESULT, now);
+        long latencyMicros = (now - sendTime) / 1000;
+        mRegistry.onResult(mServer, latencyMicros);
+        mListener.onResult(result, latencyMicros);
+    }
+
+    @Override
+    public void onClosed() throws IOException {
+        // Server sends "CLOSED" (or a closed message) when closing connection
+        throw new IOException("Server closed the connection");
+    }
+}
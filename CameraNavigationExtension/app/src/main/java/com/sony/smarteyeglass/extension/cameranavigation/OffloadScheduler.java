@@ -0,0 +1,169 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.util.Log;
+
+// Decides, frame by frame, whether a camera frame is run through object detection on the device, uploaded to the
+// server, or both. It keeps an exponentially weighted moving average of each path's latency (on the device: from
+// the frame being decoded to its detections coming back; on the server: uploading the frame, inference and the
+// result coming back) and sends each frame down the path that is currently expected to answer first. Wi-Fi quality
+// varies a lot as the user walks around, so the estimates have to keep up:
+//  - a path whose frame has been out for longer than its average is assumed to be at least that slow, so a stalled
+//    server loses frames right away instead of after its first late result,
+//  - every PROBE_INTERVAL_MS the slower path also gets a frame, so its estimate follows along (a server that was
+//    slow a minute ago may be fast now),
+//  - in MODE_RACE, frames go down both paths while their estimates are within RACE_MARGIN of each other.
+// Frames sent down both paths give both kinds of results: boxes from the device and the danger level from the
+// server. The beeps and speech only come from the server, so while the device is the faster path the server is never
+// left idle: it also gets the next frame whenever it has no frame out (or the one it has is long overdue), so the
+// danger cues lag by about one server round trip rather than a probe interval. Called from several threads.
+public class OffloadScheduler {
+
+    // Route bits returned by route()
+    public static final int NONE = 0;
+    public static final int DEVICE = 1;
+    public static final int SERVER = 2;
+
+    // Values of preference_key_offload_mode
+    public static final String MODE_AUTO = "auto";
+    public static final String MODE_RACE = "race";
+    // The original behaviour: the server gets every frame while it is available
+    public static final String MODE_SERVER = "server";
+
+    // Weight of a new sample in the moving averages
+    private static final double EWMA_WEIGHT = 0.2;
+
+    // Estimates closer than this (relative to the faster one) count as a tie in MODE_RACE
+    private static final double RACE_MARGIN = 0.2;
+
+    private static final long PROBE_INTERVAL_MS = 2000;
+
+    // Latency estimate for one of the two paths
+    private static final class Path {
+        final String name;
+
+        // Moving average in microseconds, negative until the first sample
+        double averageMicros = -1;
+
+        // When the oldest frame sent down this path since its last result was sent (0 if none is out)
+        long waitingSince;
+
+        long lastSampleTime;
+
+        Path(String name) {
+            this.name = name;
+        }
+
+        void onSample(long latencyMicros, long now) {
+            averageMicros = averageMicros < 0 ? latencyMicros
+                    : averageMicros + EWMA_WEIGHT * (latencyMicros - averageMicros);
+            waitingSince = 0;
+            lastSampleTime = now;
+        }
+
+        void onSent(long now) {
+            if (waitingSince == 0) {
+                waitingSince = now;
+            }
+        }
+
+        // Latency to expect for a frame sent now, or a negative value if there is nothing to go by yet
+        double expectedMicros(long now) {
+            if (waitingSince == 0) {
+                return averageMicros;
+            }
+            return Math.max(averageMicros, (now - waitingSince) / 1000);
+        }
+
+        void reset() {
+            averageMicros = -1;
+            waitingSince = 0;
+            lastSampleTime = 0;
+        }
+    }
+
+    private final String mMode;
+
+    private final Path mDevice = new Path("device");
+    private final Path mServer = new Path("server");
+
+    private boolean mServerWasAvailable;
+    private long mLastProbeTime;
+
+    // Path the last frame was (mainly) sent down, for logging switches
+    private int mLastChoice = NONE;
+
+    public OffloadScheduler(String mode) {
+        mMode = mode;
+    }
+
+    // Chooses the path(s) for a frame decoded at now (System.nanoTime()). serverAvailable and deviceReady say which
+    // paths can take frames at all. Returns a combination of DEVICE and SERVER, or NONE if the frame can't be used
+    public synchronized int route(boolean serverAvailable, boolean deviceReady, long now) {
+        if (serverAvailable != mServerWasAvailable) {
+            // Whatever we knew about the server is from before it went away (or from before it came back)
+            mServerWasAvailable = serverAvailable;
+            mServer.reset();
+        }
+        int route;
+        if (!serverAvailable) {
+            route = deviceReady ? DEVICE : NONE;
+        } else if (!deviceReady || MODE_SERVER.equals(mMode)) {
+            route = SERVER;
+        } else {
+            route = chooseBetween(now);
+        }
+        if ((route & DEVICE) != 0) {
+            mDevice.onSent(now);
+        }
+        if ((route & SERVER) != 0) {
+            mServer.onSent(now);
+        }
+        return route;
+    }
+
+    // Records how long the device took for a frame, from decoding to detections
+    public synchronized void onDeviceResult(long latencyMicros, long now) {
+        mDevice.onSample(latencyMicros, now);
+    }
+
+    // Records how long the server took for a frame, from the start of the upload to the result
+    public synchronized void onServerResult(long latencyMicros, long now) {
+        mServer.onSample(latencyMicros, now);
+    }
+
+    private int chooseBetween(long now) {
+        double device = mDevice.expectedMicros(now);
+        double server = mServer.expectedMicros(now);
+        if (device < 0 || server < 0) {
+            // No numbers for one of the paths yet; try both to get some
+            return DEVICE | SERVER;
+        }
+        int best = server < device ? SERVER : DEVICE;
+        if (best != mLastChoice) {
+            Log.d(Constants.OFFLOAD_SCHEDULER_TAG, "Using the " + (best == SERVER ? mServer.name : mDevice.name)
+                    + " (device " + (long) device / 1000 + "ms, server " + (long) server / 1000 + "ms)");
+            mLastChoice = best;
+        }
+
+        if (MODE_RACE.equals(mMode) && Math.abs(device - server) <= RACE_MARGIN * Math.min(device, server)) {
+            return DEVICE | SERVER;
+        }
+
+        // Keep the danger cues coming: the server takes the next frame as soon as it is free. A frame that has been
+        // out for twice the usual time was probably dropped on the way, so don't wait for it
+        if (best == DEVICE
+                && (mServer.waitingSince == 0 || now - mServer.waitingSince >= 2 * mServer.averageMicros * 1000)) {
+            return DEVICE | SERVER;
+        }
+
+        // Give the other path a frame now and then, so its estimate doesn't go stale
+        Path other = best == SERVER ? mDevice : mServer;
+        long probeInterval = PROBE_INTERVAL_MS * 1000000;
+        if (other.waitingSince == 0 && now - other.lastSampleTime >= probeInterval
+                && now - mLastProbeTime >= probeInterval) {
+            mLastProbeTime = now;
+            return DEVICE | SERVER;
+        }
+        return best;
+    }
+}
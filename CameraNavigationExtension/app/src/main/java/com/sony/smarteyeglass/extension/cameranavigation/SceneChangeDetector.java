@@ -0,0 +1,133 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.graphics.Bitmap;
+
+// Tells whether a frame shows anything the last processed frame didn't, so that while the user is standing still
+// frames aren't uploaded (or run through the detector) just to get the same results back. Each frame is reduced to
+// a GRID x GRID signature of average luma values, which is compared to the signature of the last frame that was
+// processed. A frame counts as changed if the signatures differ by more than the threshold on average, or if any
+// single cell differs by BLOCK_FACTOR times that (something small moving, e.g. a person stepping into view at a
+// distance). A frame is processed at least every MAX_SKIP_MS regardless, so the results never get too old.
+// hasChanged() and accept() must be called on the frame pipeline thread.
+public class SceneChangeDetector {
+
+    private static final int GRID = 16;
+    private static final int BLOCK_FACTOR = 4;
+    private static final long MAX_SKIP_MS = 1000;
+
+    // Average luma difference (0-255) above which a frame counts as changed, or 0 to process every frame
+    private final int mThreshold;
+
+    private int[] mPixels = new int[0];
+    private final int[] mSignature = new int[GRID * GRID];
+    private final int[] mReference = new int[GRID * GRID];
+    private long mReferenceTime;
+
+    // Time of the frame mSignature is for
+    private long mSignatureTime;
+
+    // Bumped (from any thread) to have the next frame processed no matter what. A reset is done with once a frame
+    // that hasChanged() saw after it has been accepted; the count mSignature was taken at tells which
+    private volatile int mResetCount = 1;
+    private int mSignatureResetCount;
+    private int mAcceptedResetCount;
+
+    private long mFrameCount;
+    private long mSkippedCount;
+    private long mSavedBytes;
+
+    public SceneChangeDetector(int threshold) {
+        mThreshold = threshold;
+    }
+
+    // Returns whether frame (decoded at now, in ms) should be processed. If it is, call accept() once it has actually
+    // been sent somewhere, so that later frames are compared to it
+    public boolean hasChanged(Bitmap frame, long now) {
+        mFrameCount++;
+        if (mThreshold <= 0) {
+            return true;
+        }
+        computeSignature(frame);
+        mSignatureTime = now;
+        mSignatureResetCount = mResetCount;
+        boolean changed = mSignatureResetCount != mAcceptedResetCount || now - mReferenceTime >= MAX_SKIP_MS
+                || differs();
+        if (!changed) {
+            mSkippedCount++;
+        }
+        return changed;
+    }
+
+    // Makes the frame last passed to hasChanged() the one later frames are compared to. Only for frames that were
+    // processed: comparing to a frame nobody looked at could hide a change until MAX_SKIP_MS has passed
+    public void accept() {
+        if (mThreshold <= 0) {
+            return;
+        }
+        mAcceptedResetCount = mSignatureResetCount;
+        System.arraycopy(mSignature, 0, mReference, 0, mSignature.length);
+        mReferenceTime = mSignatureTime;
+    }
+
+    // Makes the next frame count as changed, e.g. because the results of the last one went to a server that is gone
+    public synchronized void reset() {
+        mResetCount++;
+    }
+
+    // Records that a skipped frame saved uploading bytes
+    public void addSavedBytes(int bytes) {
+        mSavedBytes += bytes;
+    }
+
+    public long getSkippedCount() {
+        return mSkippedCount;
+    }
+
+    public String getStatString() {
+        return "Skipped " + mSkippedCount + " of " + mFrameCount + " frames ("
+                + (mFrameCount > 0 ? mSkippedCount * 100 / mFrameCount : 0) + "% fewer to process), saved "
+                + mSavedBytes / 1024 + "KB of uploads";
+    }
+
+    private void computeSignature(Bitmap frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        if (mPixels.length != width * height) {
+            mPixels = new int[width * height];
+        }
+        frame.getPixels(mPixels, 0, width, 0, 0, width, height);
+
+        for (int cellY = 0; cellY < GRID; cellY++) {
+            int top = cellY * height / GRID;
+            int bottom = (cellY + 1) * height / GRID;
+            for (int cellX = 0; cellX < GRID; cellX++) {
+                int left = cellX * width / GRID;
+                int right = (cellX + 1) * width / GRID;
+                int sum = 0;
+                for (int y = top; y < bottom; y++) {
+                    int row = y * width;
+                    for (int x = left; x < right; x++) {
+                        int pixel = mPixels[row + x];
+                        // Integer approximation of Rec. 601 luma: (77 R + 150 G + 29 B) / 256
+                        sum += (77 * ((pixel >> 16) & 0xff) + 150 * ((pixel >> 8) & 0xff) + 29 * (pixel & 0xff)) >> 8;
+                    }
+                }
+                int count = Math.max(1, (bottom - top) * (right - left));
+                mSignature[cellY * GRID + cellX] = sum / count;
+            }
+        }
+    }
+
+    private boolean differs() {
+        int total = 0;
+        int blockLimit = mThreshold * BLOCK_FACTOR;
+        for (int i = 0; i < mSignature.length; i++) {
+            int difference = Math.abs(mSignature[i] - mReference[i]);
+            if (difference > blockLimit) {
+                return true;
+            }
+            total += difference;
+        }
+        return total > mThreshold * mSignature.length;
+    }
+}
@@ -0,0 +1,46 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Incrementally decodes the messages the server sends on the image connection (see ServerProtocol). Bytes are
+// fed in as they arrive, in chunks of any size; every complete message is passed to the Listener and any
+// incomplete message at the end is left for the next call.
+public abstract class ServerMessageDecoder {
+
+    // Called on the thread that feeds the decoder
+    public interface Listener {
+        // The server acknowledged an image size
+        void onSizeAck(int size) throws IOException;
+
+        // The server is ready
+        void onReady() throws IOException;
+
+        // Results for one frame. The listener takes ownership of result (and recycles it when done)
+        void onResult(ServerResult result) throws IOException;
+
+        // The server is closing the connection
+        void onClosed() throws IOException;
+    }
+
+    public static ServerMessageDecoder create(String protocol) {
+        return ServerProtocol.isBinary(protocol) ? new BinaryMessageDecoder() : new TextMessageDecoder();
+    }
+
+    // Decodes the messages in buffer (flipped, i.e. ready for reading). On return buffer has been compacted, so
+    // it is ready for more bytes to be read into it. Throws IOException if the stream is corrupt.
+    public final void decode(ByteBuffer buffer, Listener listener) throws IOException {
+        try {
+            decodeMessages(buffer, listener);
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    // Consumes as many complete messages from buffer as there are, leaving buffer's position at the start of the
+    // first incomplete one
+    protected abstract void decodeMessages(ByteBuffer buffer, Listener listener) throws IOException;
+
+    // Forgets any partial message, e.g. after reconnecting
+    public abstract void reset();
+}
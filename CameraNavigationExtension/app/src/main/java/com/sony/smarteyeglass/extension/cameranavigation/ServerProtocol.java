@@ -0,0 +1,87 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import java.nio.ByteBuffer;
+
+// Wire format of the messages the server sends back on the image connection (port 9002).
+//
+// TEXT (the original protocol, still the default for existing servers): newline-terminated lines.
+//   "SIZE" <size>                         - the server got the 4-byte image size and echoes it
+//   "OK"                                  - the server is ready
+//   "RESULT" <level> <side> <detection>* "END"
+//                                         - detections are "label$confidence$xCenter$yCenter"
+//   "CLOSED"                              - the server is closing the connection (may replace any line)
+//
+// BINARY: right after connecting the client sends the hello from binaryHello() (the ints BINARY_MAGIC,
+// BINARY_VERSION and a set of FLAG_ bits) so the server knows to answer in binary. Every message then starts with
+// an 8-byte header
+//   byte version | byte type | short flags (0) | int payload length
+// followed by the payload. All values are big-endian.
+//   TYPE_SIZE_ACK   int size
+//   TYPE_READY      (empty)
+//   TYPE_RESULT     int frameId | byte dangerLevel | byte side (index into SIDES) | short count
+//                   followed by count records of RESULT_RECORD_SIZE bytes:
+//                   short labelId (index into the last TYPE_LABELS table) | short 0 | float confidence
+//                   | float xCenter | float yCenter
+//   TYPE_LABELS     short count, then count times: short byte length | UTF-8 bytes. Sent once after the hello,
+//                   and again whenever the server's label set changes
+//   TYPE_CLOSED     (empty)
+//
+// The client side of the connection (4-byte image size, then the JPEG once the size was acknowledged) is the
+// same for both.
+//
+// PIPELINED: binary messages as above, but the hello has FLAG_PIPELINED set and the client uploads frames without
+// waiting for the server: each frame is FRAME_HEADER_SIZE bytes (int frameId | int length) followed by the JPEG.
+// The server doesn't send TYPE_SIZE_ACK; it answers every frame, in the order received, with a TYPE_RESULT
+// carrying the frame's id. The client keeps up to a window's worth of frames in flight (see UploadWindow).
+//
+// The status connection (port 9003) is text whatever the protocol: the server sends "READY" once it can take
+// frames. The client either writes "Hello" every second, or, with a heartbeat, "PING <n>" lines, which the server
+// echoes straight back as "PONG <n>" (see NavigationClient).
+public final class ServerProtocol {
+
+    public static final String TEXT = "text";
+    public static final String BINARY = "binary";
+    public static final String PIPELINED = "pipelined";
+
+    // "NAVB". As an image size this would be more than a gigabyte, so servers can't mistake it for one
+    public static final int BINARY_MAGIC = 0x4E415642;
+    public static final int BINARY_VERSION = 1;
+
+    // Hello flags
+    public static final int FLAG_PIPELINED = 1;
+
+    // Per-frame header the client sends in pipelined mode
+    public static final int FRAME_HEADER_SIZE = 8;
+
+    public static final int HEADER_SIZE = 8;
+
+    public static final byte TYPE_SIZE_ACK = 1;
+    public static final byte TYPE_READY = 2;
+    public static final byte TYPE_RESULT = 3;
+    public static final byte TYPE_LABELS = 4;
+    public static final byte TYPE_CLOSED = 5;
+
+    // Fixed part of a TYPE_RESULT payload, before the records
+    public static final int RESULT_HEADER_SIZE = 8;
+    public static final int RESULT_RECORD_SIZE = 16;
+
+    // Anything bigger than this means the stream is corrupt
+    public static final int MAX_PAYLOAD_SIZE = 1 << 20;
+
+    // Danger side names, indexed by the side byte of a binary result. These are the strings the text protocol
+    // sends, so the rest of the app sees the same values whichever protocol is used
+    public static final String[] SIDES = {"NONE", "LEFT", "CENTER", "RIGHT"};
+
+    private ServerProtocol() {
+    }
+
+    // True if protocol has the server answer with binary messages
+    public static boolean isBinary(String protocol) {
+        return BINARY.equals(protocol) || PIPELINED.equals(protocol);
+    }
+
+    // Bytes the client sends right after connecting in binary (or pipelined) mode
+    public static byte[] binaryHello(int flags) {
+        return ByteBuffer.allocate(12).putInt(BINARY_MAGIC).putInt(BINARY_VERSION).putInt(flags).array();
+    }
+}
@@ -0,0 +1,72 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Danger level, side and detections the server sent back for one frame. Results are pooled along with their
+// Detection objects: the socket thread obtains one, fills it in and sends it to ImageManager, which recycles it
+// once it has been handled, so decoding results doesn't allocate once the pool has warmed up.
+public class ServerResult {
+
+    // A few results can be on their way to (or waiting in) the main thread's message queue at once
+    private static final int MAX_POOLED = 4;
+
+    private static final ConcurrentLinkedQueue<ServerResult> sPool = new ConcurrentLinkedQueue<>();
+
+    // Frame the result is for (the server's frame number in the text protocol)
+    public int mFrameId;
+
+    // SmartEyeGlass frame ID of the camera frame the result is for, for FrameTracer (set by NavigationClient)
+    public int mTraceId;
+
+    // 0 = clear, 1 = careful, 2 = dangerous
+    public int mDangerLevel;
+
+    public String mDangerSide;
+
+    // The detections of this result. Only valid until the result is recycled
+    public final ArrayList<Detection> mDetections = new ArrayList<>();
+
+    // Every Detection this result has handed out, so they can be reused
+    private final ArrayList<Detection> mDetectionPool = new ArrayList<>();
+
+    public static ServerResult obtain() {
+        ServerResult result = sPool.poll();
+        return result != null ? result : new ServerResult();
+    }
+
+    private ServerResult() {
+    }
+
+    public void set(int frameId, int dangerLevel, String dangerSide) {
+        mFrameId = frameId;
+        mDangerLevel = dangerLevel;
+        mDangerSide = dangerSide;
+        mDetections.clear();
+    }
+
+    // Appends a detection to this result, reusing one from an earlier use of the result where possible
+    public Detection addDetection() {
+        int index = mDetections.size();
+        if (index == mDetectionPool.size()) {
+            mDetectionPool.add(new Detection());
+        }
+        Detection detection = mDetectionPool.get(index);
+        mDetections.add(detection);
+        return detection;
+    }
+
+    // Returns this result to the pool. It must not be used afterwards
+    public void recycle() {
+        mDetections.clear();
+        mDangerSide = null;
+        if (sPool.size() < MAX_POOLED) {
+            sPool.offer(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "frame " + mFrameId + ", level " + mDangerLevel + ", side " + mDangerSide + ": " + mDetections;
+    }
+}
@@ -0,0 +1,122 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+// Decoder for ServerProtocol's original line-based text messages, kept for servers that don't speak the binary
+// protocol. Each message spans several lines, so the decoder remembers where it is between calls. The "CLOSED"
+// line the server may send instead of any other line is handled here once rather than at every read.
+public class TextMessageDecoder extends ServerMessageDecoder {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Longest line we accept before deciding the stream is corrupt
+    private static final int MAX_LINE_LENGTH = 4096;
+
+    // What the next line is
+    private static final int EXPECT_TYPE = 0;
+    private static final int EXPECT_SIZE = 1;
+    private static final int EXPECT_DANGER_LEVEL = 2;
+    private static final int EXPECT_DANGER_SIDE = 3;
+    private static final int EXPECT_DETECTION = 4;
+
+    private int mState = EXPECT_TYPE;
+
+    // Number of results received, used as their frame id (the text protocol doesn't carry one)
+    private int mResultCount;
+
+    // Result being read (between "RESULT" and "END")
+    private int mDangerLevel;
+    private ServerResult mResult;
+
+    @Override
+    protected void decodeMessages(ByteBuffer buffer, Listener listener) throws IOException {
+        String line;
+        while ((line = readLine(buffer)) != null) {
+            if (line.equals("CLOSED")) { // Server writes "CLOSED" when closing connection
+                reset();
+                listener.onClosed();
+                continue;
+            }
+            switch (mState) {
+                case EXPECT_TYPE:
+                    if (line.equals("SIZE")) {
+                        mState = EXPECT_SIZE;
+                    } else if (line.equals("OK")) {
+                        listener.onReady();
+                    } else if (line.equals("RESULT")) {
+                        mState = EXPECT_DANGER_LEVEL;
+                    }
+                    // Anything else is ignored, as it always was
+                    break;
+                case EXPECT_SIZE:
+                    mState = EXPECT_TYPE;
+                    listener.onSizeAck(parseInt(line));
+                    break;
+                case EXPECT_DANGER_LEVEL:
+                    mDangerLevel = parseInt(line);
+                    mState = EXPECT_DANGER_SIDE;
+                    break;
+                case EXPECT_DANGER_SIDE:
+                    mResult = ServerResult.obtain();
+                    mResult.set(++mResultCount, mDangerLevel, line);
+                    mState = EXPECT_DETECTION;
+                    break;
+                case EXPECT_DETECTION:
+                    if (line.equals("END")) {
+                        ServerResult result = mResult;
+                        mResult = null;
+                        mState = EXPECT_TYPE;
+                        listener.onResult(result);
+                    } else if (!line.isEmpty()) {
+                        try {
+                            mResult.addDetection().parse(line);
+                        } catch (RuntimeException e) {
+                            throw new ProtocolException("Bad detection: " + line);
+                        }
+                    }
+                    break;
+            }
+        }
+        if (buffer.remaining() > MAX_LINE_LENGTH) {
+            throw new ProtocolException("Line longer than " + MAX_LINE_LENGTH + " bytes");
+        }
+    }
+
+    @Override
+    public void reset() {
+        mState = EXPECT_TYPE;
+        if (mResult != null) {
+            mResult.recycle();
+            mResult = null;
+        }
+    }
+
+    // Returns the next complete line (without its line terminator) and moves past it, or returns null and leaves
+    // the buffer alone if there is no complete line
+    private static String readLine(ByteBuffer buffer) {
+        int start = buffer.position();
+        int limit = buffer.limit();
+        for (int i = start; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                int end = i;
+                if (end > start && buffer.get(end - 1) == '\r') {
+                    end--;
+                }
+                buffer.position(i + 1);
+                return new String(buffer.array(), buffer.arrayOffset() + start, end - start, UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static int parseInt(String line) throws ProtocolException {
+        try {
+            return Integer.parseInt(line.trim());
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Expected a number but got: " + line);
+        }
+    }
+}
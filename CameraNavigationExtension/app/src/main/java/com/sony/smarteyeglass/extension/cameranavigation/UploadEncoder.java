@@ -0,0 +1,163 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+
+import com.sony.smarteyeglass.extension.util.FrameBuffer;
+import com.sony.smarteyeglass.extension.util.FrameBufferPool;
+
+// Prepares camera frames for upload to the server. Instead of the camera's JPEG, the server can be sent the frame
+// scaled down to the width its models work at, cropped to a band around the horizon (where the obstacles are; the
+// sky and the ground right in front of the user's feet just cost bytes) and re-encoded at a quality that keeps it
+// within a byte budget. The budget is what the uplink can carry in UPLINK_SHARE of a camera frame interval, so a
+// frame is on the server before the next one is ready and uploads never queue up behind a slow link.
+//
+// The uplink throughput is measured by NavigationClient (see onImageSent()): an upload that had to wait for the
+// network gives a throughput sample, and one that went straight into the socket buffer means the link kept up, so
+// the estimate is raised by THROUGHPUT_PROBE to find out whether it can take more. The JPEG quality then follows
+// the budget one step per frame.
+//
+// Frames are encoded from the picture FrameDecoder decoded for the detector (see FramePipeline.getDecodedPicture()),
+// so the JPEG isn't decoded twice; the upload can't be any larger than that picture. With a crop, the coordinates
+// the server sends back are relative to the band. encode() must be called on the frame pipeline thread, the other
+// methods may be called from any thread.
+public class UploadEncoder {
+
+    // Values of preference_key_upload_width: the picture isn't scaled down. The camera's JPEG is then sent as it is
+    // unless it has to be cropped or doesn't fit the budget
+    public static final int ORIGINAL = 0;
+
+    private static final int MAX_QUALITY = 85;
+    private static final int MIN_QUALITY = 30;
+    private static final int QUALITY_STEP_DOWN = 10;
+    private static final int QUALITY_STEP_UP = 5;
+
+    // Frames smaller than this fraction of the budget let the quality go up again
+    private static final double HEADROOM = 0.6;
+
+    // Fraction of the frame interval an upload may take
+    private static final double UPLINK_SHARE = 0.5;
+
+    // Weight of a new sample in the throughput estimate, and how much the estimate is raised when an upload didn't
+    // have to wait for the network
+    private static final double THROUGHPUT_WEIGHT = 0.3;
+    private static final double THROUGHPUT_PROBE = 1.1;
+
+    // Largest width the upload is scaled to, or ORIGINAL not to scale it
+    private final int mMaxWidth;
+
+    // Height of the horizon band, as a fraction of the picture height (1 for no crop)
+    private final float mBandHeight;
+
+    private final FrameBufferPool mPool = new FrameBufferPool();
+
+    private final JpegOutputStream mStream = new JpegOutputStream();
+    private final Canvas mCanvas = new Canvas();
+    private final Paint mScalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect mSourceRect = new Rect();
+    private final Rect mOutputRect = new Rect();
+
+    // Scaled and cropped picture, reused while the picture size stays the same
+    private Bitmap mOutput;
+
+    private int mQuality = MAX_QUALITY;
+
+    // Uplink throughput in bytes per second (0 until it has been measured) and time between camera frames
+    private double mThroughput;
+    private long mFrameIntervalMs = 133;
+
+    private long mEncodedCount;
+
+    // Lets the encoded bytes be copied out without ByteArrayOutputStream.toByteArray() allocating a new array
+    private static final class JpegOutputStream extends ByteArrayOutputStream {
+        JpegOutputStream() {
+            super(32 * 1024);
+        }
+
+        void copyTo(FrameBuffer buffer) {
+            System.arraycopy(buf, 0, buffer.getArray(), buffer.getOffset(), count);
+        }
+    }
+
+    public UploadEncoder(int maxWidth, float bandHeight) {
+        mMaxWidth = maxWidth;
+        mBandHeight = bandHeight;
+    }
+
+    public synchronized void setFrameIntervalMs(long frameIntervalMs) {
+        mFrameIntervalMs = frameIntervalMs;
+    }
+
+    // Called by NavigationClient when an image has been written to the socket, which took micros.
+    // waitedForNetwork is false if it all fit in the socket's send buffer straight away
+    public synchronized void onImageSent(int bytes, long micros, boolean waitedForNetwork) {
+        if (!waitedForNetwork) {
+            if (mThroughput > 0) {
+                mThroughput *= THROUGHPUT_PROBE;
+            }
+            return;
+        }
+        double throughput = bytes * 1000000.0 / Math.max(micros, 1);
+        mThroughput = mThroughput > 0 ? mThroughput + THROUGHPUT_WEIGHT * (throughput - mThroughput) : throughput;
+    }
+
+    // Bytes a frame may take, or Integer.MAX_VALUE while the throughput is unknown
+    private synchronized int getBudget() {
+        if (mThroughput <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, mThroughput * mFrameIntervalMs / 1000 * UPLINK_SHARE);
+    }
+
+    // Returns the frame to upload, with a reference the caller owns: either a new buffer holding picture (the frame
+    // as decoded by FramePipeline) re-encoded, or another reference to jpeg (the camera's own JPEG) when that
+    // already is what would be sent
+    public FrameBuffer encode(Bitmap picture, FrameBuffer jpeg) {
+        int budget = getBudget();
+        int width = picture.getWidth();
+        // The budget applies whatever the width setting, so a slow link never has frames queueing up behind it
+        boolean scaled = mMaxWidth != ORIGINAL && width > mMaxWidth;
+        boolean cropped = mBandHeight < 1;
+        if (!scaled && !cropped && jpeg.getLength() <= budget) {
+            return jpeg.retain();
+        }
+
+        // Crop to a band centred on the middle of the picture (where the horizon is with the glasses facing forward)
+        int height = picture.getHeight();
+        int bandHeight = Math.round(height * mBandHeight);
+        int top = (height - bandHeight) / 2;
+        mSourceRect.set(0, top, width, top + bandHeight);
+        int outputWidth = scaled ? mMaxWidth : width;
+        int outputHeight = Math.max(1, bandHeight * outputWidth / width);
+        if (mOutput == null || mOutput.getWidth() != outputWidth || mOutput.getHeight() != outputHeight) {
+            mOutput = Bitmap.createBitmap(outputWidth, outputHeight, Bitmap.Config.ARGB_8888);
+        }
+        mOutputRect.set(0, 0, outputWidth, outputHeight);
+        mCanvas.setBitmap(mOutput);
+        mCanvas.drawBitmap(picture, mSourceRect, mOutputRect, mScalePaint);
+        mCanvas.setBitmap(null);
+
+        mStream.reset();
+        mOutput.compress(Bitmap.CompressFormat.JPEG, mQuality, mStream);
+        int size = mStream.size();
+        FrameBuffer encoded = mPool.acquire(size);
+        mStream.copyTo(encoded);
+
+        // Move the quality towards the budget for the next frame
+        if (size > budget) {
+            mQuality = Math.max(MIN_QUALITY, mQuality - QUALITY_STEP_DOWN);
+        } else if (size < budget * HEADROOM) {
+            mQuality = Math.min(MAX_QUALITY, mQuality + QUALITY_STEP_UP);
+        }
+        if (++mEncodedCount % 100 == 0) {
+            Log.d(Constants.IMAGE_MANAGER_TAG, "Upload " + outputWidth + "x" + outputHeight + ", " + size
+                    + " bytes (camera " + jpeg.getLength() + "), quality " + mQuality + ", budget " + budget);
+        }
+        return encoded;
+    }
+}
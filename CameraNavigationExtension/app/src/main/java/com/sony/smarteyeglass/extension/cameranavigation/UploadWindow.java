@@ -0,0 +1,84 @@
+package com.sony.smarteyeglass.extension.cameranavigation;
+
+// Frames that have been uploaded to the server in pipelined mode but whose results haven't come back yet. At most
+// a window's worth of frames can be in flight; results are matched to their frame by id. The server answers frames
+// in the order it received them, so a result for a frame also means every frame sent before it has been answered
+// or skipped by the server.
+public class UploadWindow {
+
+    private final int[] mIds;
+    private final long[] mSendTimes;
+
+    // SmartEyeGlass frame IDs of the camera frames uploaded, for FrameTracer
+    private final int[] mTraceIds;
+
+    // Trace ID of the frame passed to the last successful onResult()
+    private int mResultTraceId;
+
+    // Oldest in-flight frame and number of frames in flight (mIds/mSendTimes are used as a ring)
+    private int mHead;
+    private int mSize;
+
+    // Frames that never got a result because a later frame's result came back first
+    private long mSkippedCount;
+
+    public UploadWindow(int size) {
+        mIds = new int[Math.max(1, size)];
+        mSendTimes = new long[mIds.length];
+        mTraceIds = new int[mIds.length];
+    }
+
+    public int getSize() {
+        return mIds.length;
+    }
+
+    public int getInFlightCount() {
+        return mSize;
+    }
+
+    public boolean isFull() {
+        return mSize == mIds.length;
+    }
+
+    // Records that frameId (camera frame traceId) was sent at sendTime (System.nanoTime()). The window must not be
+    // full
+    public void onSent(int frameId, long sendTime, int traceId) {
+        int index = (mHead + mSize) % mIds.length;
+        mIds[index] = frameId;
+        mSendTimes[index] = sendTime;
+        mTraceIds[index] = traceId;
+        mSize++;
+    }
+
+    // Removes frameId (and any frames sent before it) from the window and returns the time it was sent, or -1 if
+    // it isn't in flight (e.g. a result for a frame sent before we reconnected)
+    public long onResult(int frameId) {
+        for (int i = 0; i < mSize; i++) {
+            int index = (mHead + i) % mIds.length;
+            if (mIds[index] == frameId) {
+                long sendTime = mSendTimes[index];
+                mResultTraceId = mTraceIds[index];
+                mSkippedCount += i;
+                mHead = (index + 1) % mIds.length;
+                mSize -= i + 1;
+                return sendTime;
+            }
+        }
+        return -1;
+    }
+
+    // Trace ID of the frame the last result was for
+    public int getResultTraceId() {
+        return mResultTraceId;
+    }
+
+    public long getSkippedCount() {
+        return mSkippedCount;
+    }
+
+    // Forgets every in-flight frame, e.g. when the connection is lost
+    public void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+}
@@ -0,0 +1,114 @@
+package com.sony.smarteyeglass.extension.cameranavigation.tflite;
+
+import android.graphics.RectF;
+
+/**
+ * Constant-velocity Kalman filter for one tracked box. The box's centre x, centre y, width and height are filtered
+ * independently, each with a position/velocity state and a 2x2 covariance, so an update is a handful of
+ * multiplications and nothing is allocated. Times are camera timestamps in milliseconds.
+ */
+class BoxKalmanFilter {
+  /** Standard deviation of a detection's box coordinates, in frame pixels. */
+  private static final double MEASUREMENT_STD = 4;
+
+  /** Standard deviation of the (unmodelled) acceleration, in frame pixels per second squared. */
+  private static final double ACCELERATION_STD = 300;
+
+  /** Standard deviation of the velocity of a box that was just seen for the first time. */
+  private static final double INITIAL_VELOCITY_STD = 100;
+
+  private static final int CX = 0;
+  private static final int CY = 1;
+  private static final int WIDTH = 2;
+  private static final int HEIGHT = 3;
+  private static final int AXES = 4;
+
+  private final double[] position = new double[AXES];
+  private final double[] velocity = new double[AXES];
+
+  // Covariance of each axis: [p00 p01; p01 p11]
+  private final double[] p00 = new double[AXES];
+  private final double[] p01 = new double[AXES];
+  private final double[] p11 = new double[AXES];
+
+  private long time;
+
+  /** Starts over from box, seen at time, with no idea of its velocity. */
+  void reset(final RectF box, final long time) {
+    set(position, box);
+    for (int axis = 0; axis < AXES; axis++) {
+      velocity[axis] = 0;
+      p00[axis] = MEASUREMENT_STD * MEASUREMENT_STD;
+      p01[axis] = 0;
+      p11[axis] = INITIAL_VELOCITY_STD * INITIAL_VELOCITY_STD;
+    }
+    this.time = time;
+  }
+
+  /** Moves the state forward to time. Does nothing for times before the state's own. */
+  void predict(final long time) {
+    final double dt = (time - this.time) / 1000.0;
+    if (dt <= 0) {
+      return;
+    }
+    final double q = ACCELERATION_STD * ACCELERATION_STD;
+    final double dt2 = dt * dt;
+    for (int axis = 0; axis < AXES; axis++) {
+      position[axis] += velocity[axis] * dt;
+      // P = F P F' + Q, with F = [1 dt; 0 1] and Q the white noise acceleration model
+      p00[axis] += dt * (2 * p01[axis] + dt * p11[axis]) + q * dt2 * dt2 / 4;
+      p01[axis] += dt * p11[axis] + q * dt2 * dt / 2;
+      p11[axis] += q * dt2;
+    }
+    this.time = time;
+  }
+
+  /** Corrects the state with box, detected at the state's current time (call predict() first). */
+  void update(final RectF box) {
+    final double r = MEASUREMENT_STD * MEASUREMENT_STD;
+    for (int axis = 0; axis < AXES; axis++) {
+      final double residual = measurement(box, axis) - position[axis];
+      final double s = p00[axis] + r;
+      final double k0 = p00[axis] / s;
+      final double k1 = p01[axis] / s;
+      position[axis] += k0 * residual;
+      velocity[axis] += k1 * residual;
+      p11[axis] -= k1 * p01[axis];
+      p00[axis] *= 1 - k0;
+      p01[axis] *= 1 - k0;
+    }
+  }
+
+  /** Where the box is expected to be at time, without changing the state. */
+  void getBox(final long time, final RectF out) {
+    final double dt = Math.max(0, (time - this.time) / 1000.0);
+    final double cx = position[CX] + velocity[CX] * dt;
+    final double cy = position[CY] + velocity[CY] * dt;
+    final double halfWidth = Math.max(1, position[WIDTH] + velocity[WIDTH] * dt) / 2;
+    final double halfHeight = Math.max(1, position[HEIGHT] + velocity[HEIGHT] * dt) / 2;
+    out.set((float) (cx - halfWidth), (float) (cy - halfHeight), (float) (cx + halfWidth), (float) (cy + halfHeight));
+  }
+
+  long getTime() {
+    return time;
+  }
+
+  private static void set(final double[] values, final RectF box) {
+    for (int axis = 0; axis < AXES; axis++) {
+      values[axis] = measurement(box, axis);
+    }
+  }
+
+  private static double measurement(final RectF box, final int axis) {
+    switch (axis) {
+      case CX:
+        return box.centerX();
+      case CY:
+        return box.centerY();
+      case WIDTH:
+        return box.width();
+      default:
+        return box.height();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.sony.smarteyeglass.extension.cameranavigation.tflite;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Paint.Cap;
+import android.graphics.Paint.Join;
+import android.graphics.Paint.Style;
+import android.graphics.RectF;
+import android.util.TypedValue;
+
+/**
+ * Draws an OverlayBoxes snapshot: a rounded box and a label per tracked object, mapped from the frame onto the canvas.
+ * Meant for the UI thread, which draws straight onto BoundingBoxView's canvas. Nothing is allocated per frame: the
+ * frame-to-canvas matrix is only rebuilt when the canvas or frame size changes. Not thread-safe.
+ */
+public class BoxRenderer {
+  private static final float TEXT_SIZE_DIP = 18;
+
+  private final Paint boxPaint = new Paint();
+  private final BorderedText borderedText;
+  private final RectF drawBox = new RectF();
+
+  // Transformation between frame (preview from device camera) and canvas, and the sizes it was made for
+  private Matrix frameToCanvasMatrix;
+  private int matrixCanvasWidth;
+  private int matrixCanvasHeight;
+  private int matrixFrameWidth;
+  private int matrixFrameHeight;
+  private int matrixSensorOrientation;
+
+  public BoxRenderer(final Context context) {
+    boxPaint.setColor(Color.RED);
+    boxPaint.setStyle(Style.STROKE);
+    boxPaint.setStrokeWidth(5.0f);
+    boxPaint.setStrokeCap(Cap.ROUND);
+    boxPaint.setStrokeJoin(Join.ROUND);
+    boxPaint.setStrokeMiter(100);
+
+    final float textSizePx =
+        TypedValue.applyDimension(
+            TypedValue.COMPLEX_UNIT_DIP, TEXT_SIZE_DIP, context.getResources().getDisplayMetrics());
+    borderedText = new BorderedText(textSizePx);
+  }
+
+  public void draw(final Canvas canvas, final OverlayBoxes boxes) {
+    final Matrix matrix = getFrameToCanvasMatrix(canvas.getWidth(), canvas.getHeight(), boxes);
+
+    // Iterates through all tracked objects and draws boxes
+    for (int i = 0; i < boxes.getCount(); i++) {
+      final RectF trackedPos = drawBox;
+      trackedPos.set(boxes.getLeft(i), boxes.getTop(i), boxes.getRight(i), boxes.getBottom(i));
+
+      matrix.mapRect(trackedPos);
+      boxPaint.setColor(boxes.getColor(i));
+      float cornerSize = Math.min(trackedPos.width(), trackedPos.height()) / 8.0f;
+
+      // Draws bounding boxes (not including labels) - 'trackedPos' location has been converted from 300x300 to device display
+      canvas.drawRoundRect(trackedPos, cornerSize, cornerSize, boxPaint);
+
+      borderedText.drawText(canvas, trackedPos.left + cornerSize, trackedPos.top, boxes.getLabel(i), boxPaint);
+    }
+  }
+
+  private Matrix getFrameToCanvasMatrix(final int canvasWidth, final int canvasHeight, final OverlayBoxes boxes) {
+    if (frameToCanvasMatrix == null
+        || canvasWidth != matrixCanvasWidth
+        || canvasHeight != matrixCanvasHeight
+        || boxes.getFrameWidth() != matrixFrameWidth
+        || boxes.getFrameHeight() != matrixFrameHeight
+        || boxes.getSensorOrientation() != matrixSensorOrientation) {
+      matrixCanvasWidth = canvasWidth;
+      matrixCanvasHeight = canvasHeight;
+      matrixFrameWidth = boxes.getFrameWidth();
+      matrixFrameHeight = boxes.getFrameHeight();
+      matrixSensorOrientation = boxes.getSensorOrientation();
+      frameToCanvasMatrix =
+          ImageUtils.getTransformationMatrix(
+              matrixFrameWidth,
+              matrixFrameHeight,
+              canvasWidth, // Tensorflow originally scaled to the frame's aspect ratio, but using the canvas
+              canvasHeight, // dimensions directly displayed the bounding boxes better for me
+              matrixSensorOrientation,
+              false);
+    }
+    return frameToCanvasMatrix;
+  }
+}
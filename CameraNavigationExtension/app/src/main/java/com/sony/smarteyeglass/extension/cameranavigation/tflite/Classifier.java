@@ -19,12 +19,16 @@ limitations under the License.
 package com.sony.smarteyeglass.extension.cameranavigation.tflite;
 
 import android.graphics.Bitmap;
-import android.graphics.RectF;
-import java.util.List;
 
 /** Generic interface for interacting with different recognition engines. */
 public interface Classifier {
-  List<Recognition> recognizeImage(Bitmap bitmap);
+  /**
+   * Detects objects in bitmap without allocating once warmed up. Only detections with a confidence
+   * of at least minimumConfidence are returned. The returned batch is owned by the classifier and
+   * is overwritten by the next call, so callers must be done with it (or copy what they need)
+   * before recognizing the next image.
+   */
+  DetectionBatch recognizeImage(Bitmap bitmap, float minimumConfidence);
 
   void enableStatLogging(final boolean debug);
 
@@ -35,74 +39,4 @@ public interface Classifier {
   void setNumThreads(int num_threads);
 
   void setUseNNAPI(boolean isChecked);
-
-  /** An immutable result returned by a Classifier describing what was recognized. */
-  public class Recognition {
-    /**
-     * A unique identifier for what has been recognized. Specific to the class, not the instance of
-     * the object.
-     */
-    private final String id;
-
-    /** Display name for the recognition. */
-    private final String title;
-
-    /**
-     * A sortable score for how good the recognition is relative to others. Higher should be better.
-     */
-    private final Float confidence;
-
-    /** Optional location within the source image for the location of the recognized object. */
-    private RectF location;
-
-    public Recognition(
-        final String id, final String title, final Float confidence, final RectF location) {
-      this.id = id;
-      this.title = title;
-      this.confidence = confidence;
-      this.location = location;
-    }
-
-    public String getId() {
-      return id;
-    }
-
-    public String getTitle() {
-      return title;
-    }
-
-    public Float getConfidence() {
-      return confidence;
-    }
-
-    public RectF getLocation() {
-      return new RectF(location);
-    }
-
-    public void setLocation(RectF location) {
-      this.location = location;
-    }
-
-    @Override
-    public String toString() {
-      String resultString = "";
-      if (id != null) {
-        resultString += "[" + id + "] ";
-      }
-
-      if (title != null) {
-        resultString += title + " ";
-      }
-
-      if (confidence != null) {
-        resultString += String.format("(%.1f%%) ", confidence * 100.0f);
-      }
-
-      if (location != null) {
-        resultString += location + " ";
-      }
-
-      return resultString.trim();
-    }
-  }
 }
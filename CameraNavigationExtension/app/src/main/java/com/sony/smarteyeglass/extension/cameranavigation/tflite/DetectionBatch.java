@@ -0,0 +1,112 @@
+package com.sony.smarteyeglass.extension.cameranavigation.tflite;
+
+import android.graphics.RectF;
+import java.util.List;
+
+/**
+ * The detections of one frame, stored as parallel primitive arrays instead of an object (with a boxed confidence and
+ * a RectF) per detection. A classifier fills its batch in place for every frame, so detections travel
+ * from the interpreter's output through PooledClassifier and the tracker without anything being allocated. Boxes are
+ * in input-image pixels, BOX_SIZE floats per detection: left, top, right, bottom. A batch is owned by the classifier
+ * that filled it and is overwritten by its next frame.
+ */
+public final class DetectionBatch {
+  public static final int BOX_SIZE = 4;
+
+  private final float[] boxes;
+  private final float[] scores;
+  private final int[] classIds;
+  private int count;
+
+  // Labels by class ID, shared with the classifier
+  private final List<String> labels;
+
+  DetectionBatch(final int capacity, final List<String> labels) {
+    boxes = new float[capacity * BOX_SIZE];
+    scores = new float[capacity];
+    classIds = new int[capacity];
+    this.labels = labels;
+  }
+
+  /** Creates a batch holding a copy of other's detections, for a caller that needs to keep them. */
+  DetectionBatch(final DetectionBatch other) {
+    this(other.count, other.labels);
+    System.arraycopy(other.boxes, 0, boxes, 0, other.count * BOX_SIZE);
+    System.arraycopy(other.scores, 0, scores, 0, other.count);
+    System.arraycopy(other.classIds, 0, classIds, 0, other.count);
+    count = other.count;
+  }
+
+  void clear() {
+    count = 0;
+  }
+
+  void add(
+      final float left,
+      final float top,
+      final float right,
+      final float bottom,
+      final float score,
+      final int classId) {
+    final int box = count * BOX_SIZE;
+    boxes[box] = left;
+    boxes[box + 1] = top;
+    boxes[box + 2] = right;
+    boxes[box + 3] = bottom;
+    scores[count] = score;
+    classIds[count] = classId;
+    count++;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public float getLeft(final int i) {
+    return boxes[i * BOX_SIZE];
+  }
+
+  public float getTop(final int i) {
+    return boxes[i * BOX_SIZE + 1];
+  }
+
+  public float getRight(final int i) {
+    return boxes[i * BOX_SIZE + 2];
+  }
+
+  public float getBottom(final int i) {
+    return boxes[i * BOX_SIZE + 3];
+  }
+
+  /** Copies the box of detection i into out. */
+  public void getBox(final int i, final RectF out) {
+    final int box = i * BOX_SIZE;
+    out.set(boxes[box], boxes[box + 1], boxes[box + 2], boxes[box + 3]);
+  }
+
+  public float getScore(final int i) {
+    return scores[i];
+  }
+
+  public int getClassId(final int i) {
+    return classIds[i];
+  }
+
+  /** Label of detection i's class (the label strings are shared, so this doesn't allocate). */
+  public String getTitle(final int i) {
+    final int classId = classIds[i];
+    return classId >= 0 && classId < labels.size() ? labels.get(classId) : null;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder result = new StringBuilder("[");
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        result.append(", ");
+      }
+      result.append(getTitle(i)).append(String.format(" (%.1f%%)", scores[i] * 100.0f));
+    }
+    return result.append(']').toString();
+  }
+}
@@ -0,0 +1,97 @@
+package com.sony.smarteyeglass.extension.cameranavigation.tflite;
+
+/**
+ * Minimum cost assignment of rows to columns (the Hungarian algorithm, in its O(n^3) shortest augmenting path form).
+ * Used by MultiBoxTracker to pair tracks with detections. The cost matrix is padded to a square with padCost, so with
+ * more rows than columns (or the other way round) the leftovers are assigned to padding, i.e. stay unassigned. The
+ * working arrays are kept between calls, so once they have grown to the largest matrix seen nothing is allocated.
+ * Not thread-safe.
+ */
+class HungarianAssignment {
+  private static final float INFINITY = Float.MAX_VALUE;
+
+  private float[] u = new float[0];
+  private float[] v = new float[0];
+  private float[] minSlack = new float[0];
+  private int[] match = new int[0];
+  private int[] way = new int[0];
+  private boolean[] used = new boolean[0];
+
+  /**
+   * Assigns each of the first rows rows of cost to at most one of its first columns columns, minimizing the total
+   * cost. On return, assignment[row] is the column of row, or -1 if it was left unassigned.
+   */
+  void solve(final float[][] cost, final int rows, final int columns, final float padCost, final int[] assignment) {
+    final int n = Math.max(rows, columns);
+    ensureCapacity(n + 1);
+    for (int i = 0; i <= n; i++) {
+      u[i] = 0;
+      v[i] = 0;
+      match[i] = 0;
+    }
+
+    // Arrays are 1-based here; match[column] is the row assigned to column (0 for none)
+    for (int row = 1; row <= n; row++) {
+      match[0] = row;
+      int column0 = 0;
+      for (int j = 0; j <= n; j++) {
+        minSlack[j] = INFINITY;
+        used[j] = false;
+      }
+      do {
+        used[column0] = true;
+        final int row0 = match[column0];
+        float delta = INFINITY;
+        int column1 = 0;
+        for (int j = 1; j <= n; j++) {
+          if (!used[j]) {
+            final float c = (row0 <= rows && j <= columns ? cost[row0 - 1][j - 1] : padCost) - u[row0] - v[j];
+            if (c < minSlack[j]) {
+              minSlack[j] = c;
+              way[j] = column0;
+            }
+            if (minSlack[j] < delta) {
+              delta = minSlack[j];
+              column1 = j;
+            }
+          }
+        }
+        for (int j = 0; j <= n; j++) {
+          if (used[j]) {
+            u[match[j]] += delta;
+            v[j] -= delta;
+          } else {
+            minSlack[j] -= delta;
+          }
+        }
+        column0 = column1;
+      } while (match[column0] != 0);
+      do {
+        final int column1 = way[column0];
+        match[column0] = match[column1];
+        column0 = column1;
+      } while (column0 != 0);
+    }
+
+    for (int row = 0; row < rows; row++) {
+      assignment[row] = -1;
+    }
+    for (int j = 1; j <= columns; j++) {
+      if (match[j] != 0 && match[j] <= rows) {
+        assignment[match[j] - 1] = j - 1;
+      }
+    }
+  }
+
+  private void ensureCapacity(final int size) {
+    if (u.length >= size) {
+      return;
+    }
+    u = new float[size];
+    v = new float[size];
+    minSlack = new float[size];
+    match = new int[size];
+    way = new int[size];
+    used = new boolean[size];
+  }
+}
@@ -0,0 +1,130 @@
+package com.sony.smarteyeglass.extension.cameranavigation.tflite;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Converts a frame of ARGB pixels (as returned by Bitmap.getPixels()) into the detector's input
+ * tensor. There is one implementation per input type so that the per-pixel loop has no branches,
+ * and neither does three bounds-checked puts per pixel: the float one writes the whole tensor with a
+ * single bulk put, and the quantized one packs four pixels into three ints and writes them straight
+ * into the tensor.
+ *
+ * <p>Pure Java on purpose, so it can be benchmarked on a desktop JVM (see tools/).
+ */
+public abstract class ImagePreprocessor {
+  // Float model
+  static final float IMAGE_MEAN = 128.0f;
+  static final float IMAGE_STD = 128.0f;
+
+  /**
+   * Creates the preprocessor for a model.
+   *
+   * @param isQuantized Whether the model takes uint8 (true) or float (false) input
+   * @param numPixels Number of pixels in a frame (inputSize * inputSize)
+   * @param tensor Direct buffer the interpreter reads its input from, already in native order
+   */
+  public static ImagePreprocessor create(
+      final boolean isQuantized, final int numPixels, final ByteBuffer tensor) {
+    return isQuantized
+        ? new Quantized(numPixels, tensor)
+        : new FloatingPoint(numPixels, tensor);
+  }
+
+  /**
+   * Writes pixels[0..numPixels) into the tensor as RGB. Leaves the tensor buffer positioned at its
+   * end, like the per-pixel puts this replaces.
+   */
+  public abstract void process(int[] pixels);
+
+  /**
+   * uint8 input: one byte per channel, copied as-is. Every four pixels (12 bytes of RGB) are packed
+   * into three ints and put through an int view of the tensor, so the bytes go straight into the
+   * direct buffer without an intermediate array.
+   */
+  static final class Quantized extends ImagePreprocessor {
+    private final ByteBuffer tensor;
+    // Int view of the tensor (shares its memory and byte order).
+    private final IntBuffer tensorInts;
+    private final boolean littleEndian;
+    private final int numPixels;
+
+    Quantized(final int numPixels, final ByteBuffer tensor) {
+      this.tensor = tensor;
+      this.tensorInts = tensor.asIntBuffer();
+      this.littleEndian = tensor.order() == ByteOrder.LITTLE_ENDIAN;
+      this.numPixels = numPixels;
+    }
+
+    @Override
+    public void process(final int[] pixels) {
+      final IntBuffer ints = tensorInts;
+      final int packed = numPixels & ~3;
+      ints.rewind();
+      if (littleEndian) {
+        for (int i = 0; i < packed; i += 4) {
+          final int p0 = pixels[i];
+          final int p1 = pixels[i + 1];
+          final int p2 = pixels[i + 2];
+          final int p3 = pixels[i + 3];
+          // Bytes r0 g0 b0 r1 | g1 b1 r2 g2 | b2 r3 g3 b3, lowest address in the lowest byte
+          ints.put(((p0 >> 16) & 0xFF) | (p0 & 0xFF00) | ((p0 & 0xFF) << 16) | ((p1 & 0xFF0000) << 8));
+          ints.put(((p1 >> 8) & 0xFF) | ((p1 & 0xFF) << 8) | (p2 & 0xFF0000) | ((p2 & 0xFF00) << 16));
+          ints.put((p2 & 0xFF) | ((p3 >> 8) & 0xFF00) | ((p3 & 0xFF00) << 8) | (p3 << 24));
+        }
+      } else {
+        for (int i = 0; i < packed; i += 4) {
+          final int p0 = pixels[i];
+          final int p1 = pixels[i + 1];
+          final int p2 = pixels[i + 2];
+          final int p3 = pixels[i + 3];
+          // Bytes r0 g0 b0 r1 | g1 b1 r2 g2 | b2 r3 g3 b3, lowest address in the highest byte
+          ints.put((p0 << 8) | ((p1 >> 16) & 0xFF));
+          ints.put((p1 << 16) | ((p2 >> 8) & 0xFFFF));
+          ints.put((p2 << 24) | (p3 & 0xFFFFFF));
+        }
+      }
+      // The last few pixels, if numPixels isn't a multiple of four
+      tensor.position(packed * 3);
+      for (int i = packed; i < numPixels; ++i) {
+        final int pixelValue = pixels[i];
+        tensor.put((byte) (pixelValue >> 16));
+        tensor.put((byte) (pixelValue >> 8));
+        tensor.put((byte) pixelValue);
+      }
+    }
+  }
+
+  /** float input: each channel normalized to [-1, 1) with IMAGE_MEAN and IMAGE_STD. */
+  static final class FloatingPoint extends ImagePreprocessor {
+    private final ByteBuffer tensor;
+    // Float view of the tensor (shares its memory and byte order).
+    private final FloatBuffer tensorFloats;
+    private final float[] rgb;
+
+    FloatingPoint(final int numPixels, final ByteBuffer tensor) {
+      this.tensor = tensor;
+      this.tensorFloats = tensor.asFloatBuffer();
+      this.rgb = new float[numPixels * 3];
+    }
+
+    @Override
+    public void process(final int[] pixels) {
+      final float[] rgb = this.rgb;
+      final int numPixels = rgb.length / 3;
+      final float scale = 1.0f / IMAGE_STD;
+      final float offset = IMAGE_MEAN / IMAGE_STD;
+      for (int i = 0, j = 0; i < numPixels; ++i, j += 3) {
+        final int pixelValue = pixels[i];
+        rgb[j] = ((pixelValue >> 16) & 0xFF) * scale - offset;
+        rgb[j + 1] = ((pixelValue >> 8) & 0xFF) * scale - offset;
+        rgb[j + 2] = (pixelValue & 0xFF) * scale - offset;
+      }
+      tensorFloats.rewind();
+      tensorFloats.put(rgb);
+      tensor.position(tensor.limit());
+    }
+  }
+}
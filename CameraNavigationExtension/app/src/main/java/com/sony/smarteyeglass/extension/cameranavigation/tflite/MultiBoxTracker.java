@@ -18,30 +18,33 @@ limitations under the License.
 
 package com.sony.smarteyeglass.extension.cameranavigation.tflite;
 
-import android.content.Context;
-import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Matrix;
-import android.graphics.Paint;
-import android.graphics.Paint.Cap;
-import android.graphics.Paint.Join;
-import android.graphics.Paint.Style;
 import android.graphics.RectF;
 import android.text.TextUtils;
-import android.util.Pair;
-import android.util.TypedValue;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Queue;
 /* import com.sony.smarteyeglass.extension.cameranavigation.tflite.BorderedText; // I moved the TF files into one directory, so no need to import
    import com.sony.smarteyeglass.extension.cameranavigation.tflite.ImageUtils;
    import com.sony.smarteyeglass.extension.cameranavigation.tflite.Logger; */
-import com.sony.smarteyeglass.extension.cameranavigation.tflite.Classifier.Recognition;
 
-/** A tracker that handles non-max suppression and matches existing objects to new detections. */
+/**
+ * A tracker that matches existing objects to new detections. Every object gets a track with a stable ID (and color)
+ * and a constant-velocity Kalman filter, and each frame's detections are paired with the tracks by IoU using the
+ * Hungarian algorithm. Between detections, predict() moves the boxes to where the objects are expected to be in frames
+ * the detector didn't see, so detection can run at a lower rate than the camera without the boxes freezing.
+ * snapshot() copies the boxes out for BoxRenderer to draw on the UI thread.
+ */
 public class MultiBoxTracker {
-  private static final float TEXT_SIZE_DIP = 18;
   private static final float MIN_SIZE = 16.0f;
+
+  /** Least overlap (intersection over union) for a detection to continue a track of the same class. */
+  private static final float MIN_IOU = 0.3f;
+
+  /** Detection runs in a row that may miss an object before its track is dropped. */
+  private static final int MAX_MISSES = 3;
+
+  /** How long (camera time) an object is predicted for without being detected again. */
+  private static final long MAX_AGE_MS = 1000;
   private static final int[] COLORS = {
     Color.BLUE,
     Color.RED,
@@ -59,34 +62,29 @@ public class MultiBoxTracker {
     Color.parseColor("#AA33AA"),
     Color.parseColor("#0D0068")
   };
-  final List<Pair<Float, RectF>> screenRects = new LinkedList<Pair<Float, RectF>>();
   private final Logger logger = new Logger();
-  private final Queue<Integer> availableColors = new LinkedList<Integer>();
-  private final List<TrackedRecognition> trackedObjects = new LinkedList<TrackedRecognition>();
-  private final Paint boxPaint = new Paint();
-  private final float textSizePx;
-  private final BorderedText borderedText;
-  private Matrix frameToCanvasMatrix;
+  // Colors not used by any track (a stack, so handing them out and back doesn't box them)
+  private final int[] availableColors = new int[COLORS.length];
+  private int availableColorCount;
+  private final List<TrackedRecognition> trackedObjects = new ArrayList<TrackedRecognition>();
+  private final HungarianAssignment assignment = new HungarianAssignment();
+  // Indexes (into the batch being processed) of the detections large enough to track
+  private int[] candidates = new int[0];
+  private float[][] costs = new float[0][0];
+  private int[] matches = new int[0];
+  private boolean[] detectionMatched = new boolean[0];
+  private final RectF detectionBox = new RectF();
+  private int nextTrackId;
+  // Latest camera time the boxes have been moved to (by a detection or a prediction)
+  private long shownTime;
   private int frameWidth; // For device
   private int frameHeight; // For device
   private int sensorOrientation;
 
-  public MultiBoxTracker(final Context context) {
-    for (final int color : COLORS) {
-      availableColors.add(color);
+  public MultiBoxTracker() {
+    for (int i = COLORS.length - 1; i >= 0; i--) {
+      availableColors[availableColorCount++] = COLORS[i];
     }
-
-    boxPaint.setColor(Color.RED);
-    boxPaint.setStyle(Style.STROKE);
-    boxPaint.setStrokeWidth(5.0f);
-    boxPaint.setStrokeCap(Cap.ROUND);
-    boxPaint.setStrokeJoin(Join.ROUND);
-    boxPaint.setStrokeMiter(100);
-
-    textSizePx =
-        TypedValue.applyDimension(
-            TypedValue.COMPLEX_UNIT_DIP, TEXT_SIZE_DIP, context.getResources().getDisplayMetrics());
-    borderedText = new BorderedText(textSizePx);
   }
 
   public synchronized void setFrameConfiguration(
@@ -96,142 +94,190 @@ public class MultiBoxTracker {
     this.sensorOrientation = sensorOrientation;
   }
 
-  // I have no clue why they included this method
-  /*public synchronized void drawDebug(final Canvas canvas) {
-    final Paint textPaint = new Paint();
-    textPaint.setColor(Color.WHITE);
-    textPaint.setTextSize(60.0f);
-
-    final Paint boxPaint = new Paint();
-    boxPaint.setColor(Color.RED);
-    boxPaint.setAlpha(200);
-    boxPaint.setStyle(Style.STROKE);
-
-    // Draws the text for each bounding box using the "screen locations" in screenRects - only
-    // for debugging purposes
-    for (final Pair<Float, RectF> detection : screenRects) {
-      final RectF rect = detection.second;
-      canvas.drawRect(rect, boxPaint);
-      canvas.drawText("" + detection.first, rect.left, rect.top, textPaint);
-      borderedText.drawText(canvas, rect.centerX(), rect.centerY(), "" + detection.first);
-    }
-  }*/
-
-  // This is how they wanted users to access this class's processResults() method, but I didn't like having to use a timestamp
-  public synchronized void trackResults(final List<Recognition> results, final long timestamp) {
-    logger.i("Processing %d results from %d", results.size(), timestamp);
-    processResults(results);
+  // Call with each frame's detections, in frame order; timestamp is the frame's camera timestamp (ms)
+  public synchronized void trackResults(final DetectionBatch detections, final long timestamp) {
+    logger.i("Processing %d results from %d", detections.getCount(), timestamp);
+    processResults(detections, timestamp);
   }
 
-  private Matrix getFrameToCanvasMatrix() {
-    return frameToCanvasMatrix;
+  /**
+   * Moves the boxes to where the tracked objects are expected to be at timestamp (camera time, ms), for a frame that
+   * isn't run through the detector. Objects that haven't been detected for MAX_AGE_MS are dropped. Returns whether
+   * there was anything to draw before this call.
+   */
+  public synchronized boolean predict(final long timestamp) {
+    final boolean hadTracks = !trackedObjects.isEmpty();
+    shownTime = Math.max(shownTime, timestamp);
+    for (int i = trackedObjects.size() - 1; i >= 0; i--) {
+      final TrackedRecognition track = trackedObjects.get(i);
+      if (shownTime - track.lastSeen > MAX_AGE_MS) {
+        removeTrack(i);
+      } else {
+        track.filter.getBox(shownTime, track.location);
+      }
+    }
+    return hadTracks;
   }
 
-  public synchronized void draw(final Canvas canvas) {
-    final boolean rotated = sensorOrientation % 180 == 90;
-
-    // Ratio between canvas and display dimensions
-    // Ended up not using it - see below
-    final float multiplier =
-        Math.min(
-            canvas.getHeight() / (float) (rotated ? frameWidth : frameHeight),
-            canvas.getWidth() / (float) (rotated ? frameHeight : frameWidth));
-
-    // Transformation between frame (preview from device camera) and canvas (screen view, I think?)
-    frameToCanvasMatrix =
-        ImageUtils.getTransformationMatrix(
-            frameWidth,
-            frameHeight,
-            canvas.getWidth(),  // Tensorflow originally had the two commented out params below, but using
-            canvas.getHeight(), // the canvas dimensions directly displayed the bounding boxes better for me
-            //(int) (multiplier * (rotated ? frameHeight : frameWidth)), // Converts to canvas dimensions,
-            //(int) (multiplier * (rotated ? frameWidth : frameHeight)), // flipping height and width if
-            sensorOrientation,                                         // rotated is true
-            false);
-
-    // Iterates through all detected objects and draws boxes
-    for (final TrackedRecognition recognition : trackedObjects) {
-      final RectF trackedPos = new RectF(recognition.location);
-
-      getFrameToCanvasMatrix().mapRect(trackedPos);
-      boxPaint.setColor(recognition.color);
-      float cornerSize = Math.min(trackedPos.width(), trackedPos.height()) / 8.0f;
-
-      // Draws bounding boxes (not including labels) - 'trackedPos' location has been converted from 300x300 to device display
-      canvas.drawRoundRect(trackedPos, cornerSize, cornerSize, boxPaint);
-
-      final String labelString =
-          !TextUtils.isEmpty(recognition.title)
-              ? String.format("%s %.2f", recognition.title, (100 * recognition.detectionConfidence))
-              : String.format("%.2f", (100 * recognition.detectionConfidence));
-      //            borderedText.drawText(canvas, trackedPos.left + cornerSize, trackedPos.top,
-      // labelString);
-      borderedText.drawText(
-          canvas, trackedPos.left + cornerSize, trackedPos.top, labelString + "%", boxPaint);
+  /** Copies the boxes as they are now into out, which is cleared first, for drawing on another thread. */
+  public synchronized void snapshot(final OverlayBoxes out) {
+    out.start(trackedObjects.size(), frameWidth, frameHeight, sensorOrientation);
+    for (int i = 0; i < trackedObjects.size(); i++) {
+      final TrackedRecognition track = trackedObjects.get(i);
+      final RectF location = track.location;
+      out.add(location.left, location.top, location.right, location.bottom, track.color, track.getLabel());
     }
   }
 
-  // Takes results, maps them from frame (detectionFrameRect) to screen (detectionScreenRect),
-  // stores new location (in Pairs along with confidence) in LinkedList (screenRects - debugging
-  // purposes only), then puts original results in trackedObjects for which bounding boxes are drawn
-  // in draw() method
-  // Was originally private, made it public so I could use it...
-  public void processResults(final List<Recognition> results) {
-    final List<Pair<Float, Recognition>> rectsToTrack = new LinkedList<Pair<Float, Recognition>>();
-
-    screenRects.clear();
-    final Matrix rgbFrameToScreen = new Matrix(getFrameToCanvasMatrix());
-
-    for (final Recognition result : results) {
-      if (result.getLocation() == null) {
+  // Matches the detections to trackedObjects (whose bounding boxes snapshot() hands out for drawing),
+  // starting tracks for new objects and dropping those that haven't been seen for a while
+  private void processResults(final DetectionBatch detections, final long timestamp) {
+    // Only track boxes that are large enough to be real objects
+    int columns = 0;
+    if (candidates.length < detections.getCount()) {
+      candidates = new int[detections.getCount()];
+    }
+    for (int i = 0; i < detections.getCount(); i++) {
+      if (detections.getRight(i) - detections.getLeft(i) < MIN_SIZE
+          || detections.getBottom(i) - detections.getTop(i) < MIN_SIZE) {
+        logger.w("Degenerate rectangle! %s", detections.getTitle(i));
         continue;
       }
-      final RectF detectionFrameRect = new RectF(result.getLocation());
-
-      final RectF detectionScreenRect = new RectF();
-      rgbFrameToScreen.mapRect(detectionScreenRect, detectionFrameRect);
-
-      logger.v(
-          "Result! Frame: " + result.getLocation() + " mapped to screen:" + detectionScreenRect);
+      candidates[columns++] = i;
+    }
 
-      screenRects.add(new Pair<Float, RectF>(result.getConfidence(), detectionScreenRect));
+    // Bring every track up to the time of these detections
+    final int rows = trackedObjects.size();
+    for (int i = 0; i < rows; i++) {
+      final TrackedRecognition track = trackedObjects.get(i);
+      track.filter.predict(timestamp);
+      track.filter.getBox(timestamp, track.location);
+    }
 
-      if (detectionFrameRect.width() < MIN_SIZE || detectionFrameRect.height() < MIN_SIZE) {
-        logger.w("Degenerate rectangle! " + detectionFrameRect);
-        continue;
+    // Pair tracks with detections: the cost is 1 - IoU for detections of the track's class, 1 (no better than
+    // staying unmatched) for anything else
+    ensureCapacity(rows, columns);
+    for (int i = 0; i < rows; i++) {
+      final TrackedRecognition track = trackedObjects.get(i);
+      for (int j = 0; j < columns; j++) {
+        final int detection = candidates[j];
+        costs[i][j] =
+            track.classId == detections.getClassId(detection)
+                ? 1 - intersectionOverUnion(track.location, detections, detection)
+                : 1;
       }
+    }
+    assignment.solve(costs, rows, columns, 1, matches);
 
-      // For some reason, original location for result is correct. I think this is because when
-      // method is called in DetectorActivity in their original demo app, transformation is already made
-      // and then added to recognition list in the parameter 'results'. But don't know why transformation
-      // is applied to debug mode (confidences appear in approx. center of box, maybe something to do with this?)
-      rectsToTrack.add(new Pair<Float, Recognition>(result.getConfidence(), result));
+    for (int j = 0; j < columns; j++) {
+      detectionMatched[j] = false;
+    }
+    for (int i = 0; i < rows; i++) {
+      final TrackedRecognition track = trackedObjects.get(i);
+      final int j = matches[i];
+      if (j >= 0 && costs[i][j] <= 1 - MIN_IOU) {
+        final int detection = candidates[j];
+        detections.getBox(detection, detectionBox);
+        track.filter.update(detectionBox);
+        track.detectionConfidence = detections.getScore(detection);
+        track.misses = 0;
+        track.lastSeen = timestamp;
+        detectionMatched[j] = true;
+      } else {
+        track.misses++;
+      }
     }
 
-    if (rectsToTrack.isEmpty()) {
-      logger.v("Nothing to track, aborting.");
-      return;
+    // Drop objects that haven't been seen for a while
+    for (int i = rows - 1; i >= 0; i--) {
+      if (trackedObjects.get(i).misses > MAX_MISSES) {
+        removeTrack(i);
+      }
     }
 
-    trackedObjects.clear();
-    for (final Pair<Float, Recognition> potential : rectsToTrack) {
+    // Start tracks for new objects, as long as there are colors left to tell them apart
+    for (int j = 0; j < columns && availableColorCount > 0; j++) {
+      if (detectionMatched[j]) {
+        continue;
+      }
+      final int detection = candidates[j];
       final TrackedRecognition trackedRecognition = new TrackedRecognition();
-      trackedRecognition.detectionConfidence = potential.first;
-      trackedRecognition.location = new RectF(potential.second.getLocation());
-      trackedRecognition.title = potential.second.getTitle();
-      trackedRecognition.color = COLORS[trackedObjects.size()];
+      trackedRecognition.id = nextTrackId++;
+      trackedRecognition.detectionConfidence = detections.getScore(detection);
+      trackedRecognition.classId = detections.getClassId(detection);
+      trackedRecognition.title = detections.getTitle(detection);
+      trackedRecognition.color = availableColors[--availableColorCount];
+      trackedRecognition.lastSeen = timestamp;
+      detections.getBox(detection, detectionBox);
+      trackedRecognition.filter.reset(detectionBox, timestamp);
       trackedObjects.add(trackedRecognition);
+    }
 
-      if (trackedObjects.size() >= COLORS.length) {
-        break;
-      }
+    // Show the boxes at the latest time asked for, which may already be past these detections' frame
+    shownTime = Math.max(shownTime, timestamp);
+    for (int i = 0; i < trackedObjects.size(); i++) {
+      final TrackedRecognition track = trackedObjects.get(i);
+      track.filter.getBox(shownTime, track.location);
     }
   }
 
+  private void removeTrack(final int index) {
+    final TrackedRecognition track = trackedObjects.remove(index);
+    availableColors[availableColorCount++] = track.color;
+  }
+
+  private void ensureCapacity(final int rows, final int columns) {
+    if (costs.length < rows || (rows > 0 && costs[0].length < columns)) {
+      costs = new float[Math.max(rows, costs.length)][Math.max(columns, costs.length > 0 ? costs[0].length : 0)];
+    }
+    if (matches.length < rows) {
+      matches = new int[rows];
+    }
+    if (detectionMatched.length < columns) {
+      detectionMatched = new boolean[columns];
+    }
+  }
+
+  private static float intersectionOverUnion(final RectF a, final DetectionBatch detections, final int i) {
+    final float left = detections.getLeft(i);
+    final float top = detections.getTop(i);
+    final float right = detections.getRight(i);
+    final float bottom = detections.getBottom(i);
+    final float width = Math.min(a.right, right) - Math.max(a.left, left);
+    final float height = Math.min(a.bottom, bottom) - Math.max(a.top, top);
+    if (width <= 0 || height <= 0) {
+      return 0;
+    }
+    final float intersection = width * height;
+    return intersection / (a.width() * a.height() + (right - left) * (bottom - top) - intersection);
+  }
+
   private static class TrackedRecognition {
-    RectF location;
+    final RectF location = new RectF();
+    final BoxKalmanFilter filter = new BoxKalmanFilter();
+    int id;
+    int classId;
     float detectionConfidence;
     int color;
     String title;
+    // Detection runs in a row that didn't find this object, and camera time it was last found at
+    int misses;
+    long lastSeen;
+    // Label as last formatted, and the confidence (in hundredths of a percent, as shown) it was formatted for. The
+    // confidence only changes when the object is detected again, so most frames reuse the string
+    private String label;
+    private int labelConfidence = -1;
+
+    String getLabel() {
+      final int confidence = Math.round(10000 * detectionConfidence);
+      if (label == null || confidence != labelConfidence) {
+        label =
+            !TextUtils.isEmpty(title)
+                ? String.format("#%d %s %.2f%%", id, title, confidence / 100.0f)
+                : String.format("#%d %.2f%%", id, confidence / 100.0f);
+        labelConfidence = confidence;
+      }
+      return label;
+    }
   }
 }
@@ -0,0 +1,117 @@
+package com.sony.smarteyeglass.extension.cameranavigation.tflite;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * What the overlay shows at one moment: the tracked boxes, in frame coordinates, with their colors and labels. The
+ * tracker copies its state into one of these for the UI thread to draw, so only a few hundred bytes travel per frame
+ * instead of a display-sized bitmap. Snapshots are pooled: the tracker's caller obtains one, MultiBoxTracker.snapshot()
+ * fills it in and whoever ends up with it (BoundingBoxView, or the channel dropping it) recycles it.
+ */
+public final class OverlayBoxes {
+  public static final int BOX_SIZE = 4;
+
+  /** A couple of snapshots can be waiting for the UI while the one on screen is still being drawn. */
+  private static final int MAX_POOLED = 4;
+
+  private static final ConcurrentLinkedQueue<OverlayBoxes> pool = new ConcurrentLinkedQueue<OverlayBoxes>();
+
+  // Left, top, right, bottom of each box, in frame pixels
+  private float[] boxes = new float[0];
+  private int[] colors = new int[0];
+  // The tracker's label strings, which only change along with the confidence shown, so copying them is free
+  private String[] labels = new String[0];
+  private int count;
+
+  // Frame the boxes are in, so they can be mapped onto whatever they are drawn over
+  private int frameWidth;
+  private int frameHeight;
+  private int sensorOrientation;
+
+  public static OverlayBoxes obtain() {
+    final OverlayBoxes boxes = pool.poll();
+    return boxes != null ? boxes : new OverlayBoxes();
+  }
+
+  private OverlayBoxes() {}
+
+  /** Returns this snapshot to the pool. It must not be used afterwards. */
+  public void recycle() {
+    for (int i = 0; i < count; i++) {
+      labels[i] = null;
+    }
+    count = 0;
+    if (pool.size() < MAX_POOLED) {
+      pool.offer(this);
+    }
+  }
+
+  void start(final int capacity, final int frameWidth, final int frameHeight, final int sensorOrientation) {
+    if (colors.length < capacity) {
+      boxes = new float[capacity * BOX_SIZE];
+      colors = new int[capacity];
+      labels = new String[capacity];
+    }
+    count = 0;
+    this.frameWidth = frameWidth;
+    this.frameHeight = frameHeight;
+    this.sensorOrientation = sensorOrientation;
+  }
+
+  void add(
+      final float left,
+      final float top,
+      final float right,
+      final float bottom,
+      final int color,
+      final String label) {
+    final int box = count * BOX_SIZE;
+    boxes[box] = left;
+    boxes[box + 1] = top;
+    boxes[box + 2] = right;
+    boxes[box + 3] = bottom;
+    colors[count] = color;
+    labels[count] = label;
+    count++;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public float getLeft(final int i) {
+    return boxes[i * BOX_SIZE];
+  }
+
+  public float getTop(final int i) {
+    return boxes[i * BOX_SIZE + 1];
+  }
+
+  public float getRight(final int i) {
+    return boxes[i * BOX_SIZE + 2];
+  }
+
+  public float getBottom(final int i) {
+    return boxes[i * BOX_SIZE + 3];
+  }
+
+  public int getColor(final int i) {
+    return colors[i];
+  }
+
+  public String getLabel(final int i) {
+    return labels[i];
+  }
+
+  public int getFrameWidth() {
+    return frameWidth;
+  }
+
+  public int getFrameHeight() {
+    return frameHeight;
+  }
+
+  public int getSensorOrientation() {
+    return sensorOrientation;
+  }
+}
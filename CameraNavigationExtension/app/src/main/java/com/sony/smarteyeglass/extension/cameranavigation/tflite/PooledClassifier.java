@@ -0,0 +1,308 @@
+package com.sony.smarteyeglass.extension.cameranavigation.tflite;
+
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.os.Process;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import com.sony.smarteyeglass.extension.cameranavigation.FrameMailbox;
+
+/**
+ * A Classifier backed by several independent interpreters, so preprocessing and inference for
+ * consecutive frames can run on different cores at the same time.
+ *
+ * <p>This is the "multiple classifiers, each with their own thread" idea from the comment above
+ * TFLiteObjectDetectionAPIModel.recognizeImage(), made safe for navigation: frames are handed out
+ * round-robin with {@link #submit}, and results are delivered to the {@link Listener} strictly in
+ * frame order. A result that finishes after a newer frame's result has already been delivered is
+ * discarded, so the user is never shown (or warned about) a stale frame. Each worker only keeps the
+ * newest frame it was given: if it is still busy when its next frame arrives, the frame waiting for
+ * it is replaced rather than queued.
+ *
+ * <p>A single TFLiteObjectDetectionAPIModel is still not thread-safe, so each worker has its own
+ * interpreter and buffers and every use of an interpreter is synchronized on it.
+ */
+public class PooledClassifier implements Classifier {
+  private static final Logger LOGGER = new Logger(PooledClassifier.class);
+
+  /** Receives results from the workers. All methods are called on worker threads. */
+  public interface Listener {
+    /**
+     * Called with the results for a frame, in increasing sequence order. Calls are serialized. The
+     * detections are owned by the worker's interpreter and are only valid during the call.
+     */
+    void onDetections(long sequence, Object tag, DetectionBatch detections);
+
+    /**
+     * Called exactly once for every submitted frame when the pool is done with it, whether its
+     * results were delivered, discarded as stale, or never computed because it was replaced by a
+     * newer frame. Use it to release whatever tag refers to.
+     */
+    void onFrameDone(long sequence, Object tag);
+  }
+
+  // A frame waiting for (or being processed by) a worker. Recycled through jobPool.
+  private static final class Job {
+    Bitmap bitmap;
+    long sequence;
+    Object tag;
+  }
+
+  private final TFLiteObjectDetectionAPIModel[] models;
+  private final Worker[] workers;
+  private final float minimumConfidence;
+  private final Listener listener;
+
+  private final ConcurrentLinkedQueue<Job> jobPool = new ConcurrentLinkedQueue<>();
+
+  // Round-robin position for submit() and the synchronous recognizeImage() calls.
+  private int nextWorker;
+  private long nextSequence;
+
+  // Guards ordered delivery.
+  private final Object deliveryLock = new Object();
+  private long lastDeliveredSequence = Long.MIN_VALUE;
+  private long staleResults;
+
+  /**
+   * Creates numInterpreters interpreters for the model and starts one worker thread for each.
+   * Results below minimumConfidence are dropped by the interpreters.
+   */
+  public static PooledClassifier create(
+      final AssetManager assetManager,
+      final String modelFilename,
+      final String labelFilename,
+      final int inputSize,
+      final boolean isQuantized,
+      final int numInterpreters,
+      final float minimumConfidence,
+      final Listener listener)
+      throws IOException {
+    final TFLiteObjectDetectionAPIModel[] models = new TFLiteObjectDetectionAPIModel[numInterpreters];
+    for (int i = 0; i < numInterpreters; ++i) {
+      models[i] =
+          (TFLiteObjectDetectionAPIModel)
+              TFLiteObjectDetectionAPIModel.create(
+                  assetManager, modelFilename, labelFilename, inputSize, isQuantized);
+    }
+    return new PooledClassifier(models, minimumConfidence, listener);
+  }
+
+  private PooledClassifier(
+      final TFLiteObjectDetectionAPIModel[] models,
+      final float minimumConfidence,
+      final Listener listener) {
+    this.models = models;
+    this.minimumConfidence = minimumConfidence;
+    this.listener = listener;
+    workers = new Worker[models.length];
+    for (int i = 0; i < models.length; ++i) {
+      workers[i] = new Worker(i, models[i]);
+      workers[i].start();
+    }
+  }
+
+  public int getNumInterpreters() {
+    return models.length;
+  }
+
+  /**
+   * Returns one of the interpreters on its own, e.g. to benchmark or warm up a single interpreter.
+   * It is not locked against its worker, so only use it while no frames are being submitted.
+   */
+  public Classifier getInterpreter(final int index) {
+    return models[index];
+  }
+
+  /**
+   * Hands a frame to the next worker in round-robin order and returns immediately with the sequence
+   * number its results will be delivered under. The bitmap must stay unchanged until {@link
+   * Listener#onFrameDone} is called for that sequence.
+   */
+  public long submit(final Bitmap bitmap, final Object tag) {
+    Job job = jobPool.poll();
+    if (job == null) {
+      job = new Job();
+    }
+    job.bitmap = bitmap;
+    job.tag = tag;
+
+    final long sequence;
+    synchronized (this) {
+      sequence = nextSequence++;
+      job.sequence = sequence;
+      final Worker worker = workers[nextWorker];
+      nextWorker = (nextWorker + 1) % workers.length;
+      // Posting under the lock keeps each worker's frames in sequence order.
+      worker.mailbox.post(job);
+    }
+    return sequence;
+  }
+
+  /** Releases the frames waiting for the workers (e.g. when the camera stops) without running them. */
+  public void clear() {
+    for (final Worker worker : workers) {
+      worker.mailbox.clear();
+    }
+  }
+
+  /** Frames replaced in a worker's slot before they were processed. */
+  public long getDroppedCount() {
+    long dropped = 0;
+    for (final Worker worker : workers) {
+      dropped += worker.mailbox.getDroppedCount();
+    }
+    return dropped;
+  }
+
+  /** Frames processed by the workers. */
+  public long getConsumedCount() {
+    long consumed = 0;
+    for (final Worker worker : workers) {
+      consumed += worker.mailbox.getConsumedCount();
+    }
+    return consumed;
+  }
+
+  /** Results discarded because a newer frame's results had already been delivered. */
+  public long getStaleResultCount() {
+    synchronized (deliveryLock) {
+      return staleResults;
+    }
+  }
+
+  /**
+   * Synchronous recognition on the next interpreter in line, locked against its worker. Meant for
+   * one-off calls; frames should go through {@link #submit}.
+   *
+   * <p>Unlike a single interpreter's batch, the returned batch belongs to the caller: the interpreter's
+   * own batch is overwritten as soon as its worker takes the next frame, so the detections are
+   * copied out before the interpreter is unlocked.
+   */
+  @Override
+  public DetectionBatch recognizeImage(final Bitmap bitmap, final float minimumConfidence) {
+    final TFLiteObjectDetectionAPIModel model = nextModel();
+    synchronized (model) {
+      return new DetectionBatch(model.recognizeImage(bitmap, minimumConfidence));
+    }
+  }
+
+  @Override
+  public void enableStatLogging(final boolean debug) {
+    for (final TFLiteObjectDetectionAPIModel model : models) {
+      model.enableStatLogging(debug);
+    }
+  }
+
+  @Override
+  public String getStatString() {
+    return "dropped=" + getDroppedCount() + " consumed=" + getConsumedCount()
+        + " stale=" + getStaleResultCount();
+  }
+
+  /** Stops the workers and closes all interpreters. Frames still waiting are reported as done. */
+  @Override
+  public void close() {
+    for (final Worker worker : workers) {
+      worker.interrupt();
+    }
+    for (final Worker worker : workers) {
+      try {
+        worker.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      worker.mailbox.clear();
+    }
+    for (final TFLiteObjectDetectionAPIModel model : models) {
+      model.close();
+    }
+  }
+
+  /** Sets the number of threads used by each interpreter. */
+  @Override
+  public void setNumThreads(final int num_threads) {
+    for (final TFLiteObjectDetectionAPIModel model : models) {
+      synchronized (model) {
+        model.setNumThreads(num_threads);
+      }
+    }
+  }
+
+  @Override
+  public void setUseNNAPI(final boolean isChecked) {
+    for (final TFLiteObjectDetectionAPIModel model : models) {
+      synchronized (model) {
+        model.setUseNNAPI(isChecked);
+      }
+    }
+  }
+
+  private synchronized TFLiteObjectDetectionAPIModel nextModel() {
+    final TFLiteObjectDetectionAPIModel model = models[nextWorker];
+    nextWorker = (nextWorker + 1) % models.length;
+    return model;
+  }
+
+  // Delivers results unless a newer frame's results already went out.
+  private void deliver(final Job job, final DetectionBatch detections) {
+    synchronized (deliveryLock) {
+      if (job.sequence <= lastDeliveredSequence) {
+        staleResults++;
+        return;
+      }
+      lastDeliveredSequence = job.sequence;
+      listener.onDetections(job.sequence, job.tag, detections);
+    }
+  }
+
+  private void finish(final Job job) {
+    try {
+      listener.onFrameDone(job.sequence, job.tag);
+    } finally {
+      job.bitmap = null;
+      job.tag = null;
+      jobPool.offer(job);
+    }
+  }
+
+  private final class Worker extends Thread {
+    final FrameMailbox<Job> mailbox =
+        new FrameMailbox<>(
+            new FrameMailbox.Recycler<Job>() {
+              @Override
+              public void recycle(final Job job) {
+                finish(job);
+              }
+            });
+    private final TFLiteObjectDetectionAPIModel model;
+
+    Worker(final int index, final TFLiteObjectDetectionAPIModel model) {
+      super("Detector-" + index);
+      this.model = model;
+    }
+
+    @Override
+    public void run() {
+      Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+      while (!isInterrupted()) {
+        final Job job;
+        try {
+          job = mailbox.take();
+        } catch (InterruptedException e) {
+          break;
+        }
+        try {
+          synchronized (model) {
+            deliver(job, model.recognizeImage(job.bitmap, minimumConfidence));
+          }
+        } catch (RuntimeException e) {
+          // Keep the worker alive; the frame simply produces no results.
+          LOGGER.e(e, "Detection failed on frame %d", job.sequence);
+        } finally {
+          finish(job);
+        }
+      }
+    }
+  }
+}
@@ -21,7 +21,6 @@ package com.sony.smarteyeglass.extension.cameranavigation.tflite;
 import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.graphics.Bitmap;
-import android.graphics.RectF;
 import android.os.Trace;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
@@ -32,9 +31,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Vector;
 /* import com.sony.smarteyeglass.extension.cameranavigation.tflite.Logger; */ // I moved TF files into one directory, so no need to import
@@ -49,9 +46,6 @@ public class TFLiteObjectDetectionAPIModel implements Classifier {
 
   // Only return this many results.
   private static final int NUM_DETECTIONS = 10;
-  // Float model
-  private static final float IMAGE_MEAN = 128.0f;
-  private static final float IMAGE_STD = 128.0f;
   // Number of threads in the java app
   private static final int NUM_THREADS = 4;
   private boolean isModelQuantized;
@@ -74,8 +68,24 @@ public class TFLiteObjectDetectionAPIModel implements Classifier {
   private float[] numDetections;
 
   private ByteBuffer imgData;
+  // Fills imgData from intValues (quantized or float, depending on the model).
+  private ImagePreprocessor preprocessor;
+
+  // Input/output containers handed to the interpreter. Built once, since the arrays above are
+  // reused for every inference.
+  private Object[] inputArray;
+  private Map<Integer, Object> outputMap;
+
+  // Results of recognizeImage(), refilled for every image.
+  private DetectionBatch detections;
 
   private Interpreter tfLite;
+  // The memory-mapped model and the options the interpreter was built with, so it can be rebuilt
+  // when the backend changes.
+  private MappedByteBuffer tfliteModel;
+  private final Interpreter.Options tfliteOptions = new Interpreter.Options();
+  private int numThreads = NUM_THREADS;
+  private boolean useNNAPI;
 
   private TFLiteObjectDetectionAPIModel() {}
 
@@ -123,7 +133,9 @@ public class TFLiteObjectDetectionAPIModel implements Classifier {
     d.inputSize = inputSize;
 
     try {
-      d.tfLite = new Interpreter(loadModelFile(assetManager, modelFilename));
+      d.tfliteModel = loadModelFile(assetManager, modelFilename);
+      d.tfliteOptions.setNumThreads(NUM_THREADS);
+      d.tfLite = new Interpreter(d.tfliteModel, d.tfliteOptions);
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
@@ -139,12 +151,21 @@ public class TFLiteObjectDetectionAPIModel implements Classifier {
     d.imgData = ByteBuffer.allocateDirect(1 * d.inputSize * d.inputSize * 3 * numBytesPerChannel);
     d.imgData.order(ByteOrder.nativeOrder());
     d.intValues = new int[d.inputSize * d.inputSize];
+    d.preprocessor = ImagePreprocessor.create(isQuantized, d.intValues.length, d.imgData);
 
-    d.tfLite.setNumThreads(NUM_THREADS);
     d.outputLocations = new float[1][NUM_DETECTIONS][4];
     d.outputClasses = new float[1][NUM_DETECTIONS];
     d.outputScores = new float[1][NUM_DETECTIONS];
     d.numDetections = new float[1];
+
+    d.inputArray = new Object[] {d.imgData};
+    d.outputMap = new HashMap<>();
+    d.outputMap.put(0, d.outputLocations);
+    d.outputMap.put(1, d.outputClasses);
+    d.outputMap.put(2, d.outputScores);
+    d.outputMap.put(3, d.numDetections);
+
+    d.detections = new DetectionBatch(NUM_DETECTIONS, d.labels);
     return d;
   }
 
@@ -159,77 +180,55 @@ public class TFLiteObjectDetectionAPIModel implements Classifier {
   // with their own thread tasked with that classifier's detections. But again, not a suitable choice for
   // our purposes.
   // Also, this 2-space tab format sucks.
+  //
+  // Copies the results straight from the output arrays into this classifier's DetectionBatch,
+  // scaled back to the input size, and skips everything below minimumConfidence, so nothing is
+  // allocated once the classifier is warmed up. The returned batch is only valid until the next call.
   @Override
-  public List<Recognition> recognizeImage(final Bitmap bitmap) {
-    // Log this method so that it can be analyzed with systrace.
+  public DetectionBatch recognizeImage(final Bitmap bitmap, final float minimumConfidence) {
     Trace.beginSection("recognizeImage");
+    runInference(bitmap);
 
+    detections.clear();
+    for (int i = 0; i < NUM_DETECTIONS; ++i) {
+      final float score = outputScores[0][i];
+      if (score < minimumConfidence) {
+        continue;
+      }
+      detections.add(
+          outputLocations[0][i][1] * inputSize,
+          outputLocations[0][i][0] * inputSize,
+          outputLocations[0][i][3] * inputSize,
+          outputLocations[0][i][2] * inputSize,
+          score,
+          getLabelIndex(i));
+    }
+    Trace.endSection(); // "recognizeImage"
+    return detections;
+  }
+
+  // Preprocesses bitmap into imgData and runs the model, leaving the results in the output arrays.
+  private void runInference(final Bitmap bitmap) {
     Trace.beginSection("preprocessBitmap");
     // Preprocess the image data from 0-255 int to normalized float based
     // on the provided parameters.
     bitmap.getPixels(intValues, 0, bitmap.getWidth(), 0, 0, bitmap.getWidth(), bitmap.getHeight());
-    imgData.rewind();
-    for (int i = 0; i < inputSize; ++i) {
-      for (int j = 0; j < inputSize; ++j) {
-        int pixelValue = intValues[i * inputSize + j];
-        if (isModelQuantized) {
-          // Quantized model
-          imgData.put((byte) ((pixelValue >> 16) & 0xFF));
-          imgData.put((byte) ((pixelValue >> 8) & 0xFF));
-          imgData.put((byte) (pixelValue & 0xFF));
-        } else { // Float model
-          imgData.putFloat((((pixelValue >> 16) & 0xFF) - IMAGE_MEAN) / IMAGE_STD);
-          imgData.putFloat((((pixelValue >> 8) & 0xFF) - IMAGE_MEAN) / IMAGE_STD);
-          imgData.putFloat(((pixelValue & 0xFF) - IMAGE_MEAN) / IMAGE_STD);
-        }
-      }
-    }
-
+    preprocessor.process(intValues);
     Trace.endSection(); // preprocessBitmap
 
-    // Copy the input data into TensorFlow.
-    Trace.beginSection("feed");
-    outputLocations = new float[1][NUM_DETECTIONS][4];
-    outputClasses = new float[1][NUM_DETECTIONS];
-    outputScores = new float[1][NUM_DETECTIONS];
-    numDetections = new float[1];
-
-    Object[] inputArray = {imgData};
-    Map<Integer, Object> outputMap = new HashMap<>();
-    outputMap.put(0, outputLocations);
-    outputMap.put(1, outputClasses);
-    outputMap.put(2, outputScores);
-    outputMap.put(3, numDetections);
-    Trace.endSection();
-
-    // Run the inference call.
+    // Run the inference call. The input and output containers were built in create() and the
+    // interpreter writes straight into the preallocated output arrays.
     Trace.beginSection("run");
     tfLite.runForMultipleInputsOutputs(inputArray, outputMap);
     Trace.endSection();
+  }
 
-    // Show the best detections.
-    // after scaling them back to the input size.
-    final ArrayList<Recognition> recognitions = new ArrayList<>(NUM_DETECTIONS);
-    for (int i = 0; i < NUM_DETECTIONS; ++i) {
-      final RectF detection =
-          new RectF(
-              outputLocations[0][i][1] * inputSize,
-              outputLocations[0][i][0] * inputSize,
-              outputLocations[0][i][3] * inputSize,
-              outputLocations[0][i][2] * inputSize);
-      // SSD Mobilenet V1 Model assumes class 0 is background class
-      // in label file and class labels start from 1 to number_of_classes+1,
-      // while outputClasses correspond to class index from 0 to number_of_classes
-      int labelOffset = 1;
-      recognitions.add(
-          new Recognition(
-              "" + i,
-              labels.get((int) outputClasses[0][i] + labelOffset),
-              outputScores[0][i],
-              detection));
-    }
-    Trace.endSection(); // "recognizeImage"
-    return recognitions;
+  private int getLabelIndex(final int i) {
+    // SSD Mobilenet V1 Model assumes class 0 is background class
+    // in label file and class labels start from 1 to number_of_classes+1,
+    // while outputClasses correspond to class index from 0 to number_of_classes
+    int labelOffset = 1;
+    return (int) outputClasses[0][i] + labelOffset;
   }
 
   @Override
@@ -241,14 +240,36 @@ public class TFLiteObjectDetectionAPIModel implements Classifier {
   }
 
   @Override
-  public void close() {}
+  public void close() {
+    if (tfLite != null) {
+      tfLite.close();
+      tfLite = null;
+    }
+  }
 
   public void setNumThreads(int num_threads) {
-    if (tfLite != null) tfLite.setNumThreads(num_threads);
+    if (num_threads != numThreads) {
+      numThreads = num_threads;
+      tfliteOptions.setNumThreads(num_threads);
+      recreateInterpreter();
+    }
   }
 
+  // Turning NNAPI on applies its delegate to the existing interpreter, and turning it off again
+  // doesn't remove it, so the interpreter is rebuilt with the new options instead.
   @Override
   public void setUseNNAPI(boolean isChecked) {
-    if (tfLite != null) tfLite.setUseNNAPI(isChecked);
+    if (isChecked != useNNAPI) {
+      useNNAPI = isChecked;
+      tfliteOptions.setUseNNAPI(isChecked);
+      recreateInterpreter();
+    }
+  }
+
+  private void recreateInterpreter() {
+    if (tfLite != null) {
+      tfLite.close();
+      tfLite = new Interpreter(tfliteModel, tfliteOptions);
+    }
   }
 }
@@ -0,0 +1,472 @@
+package com.sony.smarteyeglass.extension.cameranavigation.tools;
+
+import com.sony.smarteyeglass.extension.cameranavigation.ServerProtocol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Stand-in for the navigation server, for testing NavigationClient (and load testing in general) without the real
+// depth/detection server. Speaks everything in ServerProtocol on the image port (the text protocol, and binary or
+// pipelined when the client starts with the binary hello) and the status port (READY, "Hello", PING/PONG), but
+// instead of running any models it answers every frame with made-up detections after a configurable delay. Faults
+// can be injected: frames whose results never come, connections that drop, pongs that get lost, a slow uplink.
+// Prints a line of counters every few seconds. See tools/README for the options.
+public class FakeNavigationServer {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private static final String[] LABELS = {"person", "chair", "car", "bicycle", "door"};
+
+    private static final long STATS_INTERVAL_MS = 5000;
+
+    // Options, with their defaults
+    private int mImagePort = 9002;
+    private int mStatusPort = 9003;
+    private long mLatencyMs = 80;
+    private long mJitterMs = 20;
+    private double mDropRate;
+    private double mDisconnectRate;
+    private boolean mAbrupt;
+    private double mPongLossRate;
+    private long mPongDelayMs;
+    private long mReadyDelayMs;
+    private int mUplinkKBps;
+    private int mDangerLevel = -1;
+
+    private final Random mRandom = new Random();
+
+    // Status connection of the current client, closed along with the image connection on an injected disconnect
+    private volatile Socket mStatusSocket;
+
+    private final AtomicLong mFrames = new AtomicLong();
+    private final AtomicLong mBytes = new AtomicLong();
+    private final AtomicLong mResults = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicLong mDisconnects = new AtomicLong();
+    private final AtomicLong mPings = new AtomicLong();
+    private final AtomicLong mPongs = new AtomicLong();
+
+    public static void main(String[] args) throws IOException {
+        FakeNavigationServer server = new FakeNavigationServer();
+        try {
+            server.parseOptions(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Options: --image-port N --status-port N --latency MS --jitter MS --drop P"
+                    + " --disconnect P --abrupt --pong-loss P --pong-delay MS --ready-delay MS --uplink-kbps N"
+                    + " --danger 0|1|2 --seed N");
+            System.exit(2);
+        }
+        server.run();
+    }
+
+    private void parseOptions(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--abrupt")) {
+                mAbrupt = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--image-port": mImagePort = Integer.parseInt(value); break;
+                    case "--status-port": mStatusPort = Integer.parseInt(value); break;
+                    case "--latency": mLatencyMs = Long.parseLong(value); break;
+                    case "--jitter": mJitterMs = Long.parseLong(value); break;
+                    case "--drop": mDropRate = Double.parseDouble(value); break;
+                    case "--disconnect": mDisconnectRate = Double.parseDouble(value); break;
+                    case "--pong-loss": mPongLossRate = Double.parseDouble(value); break;
+                    case "--pong-delay": mPongDelayMs = Long.parseLong(value); break;
+                    case "--ready-delay": mReadyDelayMs = Long.parseLong(value); break;
+                    case "--uplink-kbps": mUplinkKBps = Integer.parseInt(value); break;
+                    case "--danger": mDangerLevel = Integer.parseInt(value); break;
+                    case "--seed": mRandom.setSeed(Long.parseLong(value)); break;
+                    default: throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad value for " + option + ": " + value);
+            }
+        }
+    }
+
+    private void run() throws IOException {
+        final ServerSocket statusServer = new ServerSocket(mStatusPort);
+        ServerSocket imageServer = new ServerSocket(mImagePort);
+        System.out.println("Listening on image port " + mImagePort + " and status port " + mStatusPort
+                + ", latency " + mLatencyMs + "+-" + mJitterMs + "ms");
+
+        startThread("StatusAcceptor", new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        final Socket socket = statusServer.accept();
+                        mStatusSocket = socket;
+                        startThread("Status", new Runnable() {
+                            @Override
+                            public void run() {
+                                serveStatus(socket);
+                            }
+                        });
+                    } catch (IOException e) {
+                        System.err.println("Status accept failed: " + e);
+                        return;
+                    }
+                }
+            }
+        });
+        startThread("Stats", new Runnable() {
+            @Override
+            public void run() {
+                printStats();
+            }
+        });
+
+        while (true) {
+            final Socket socket = imageServer.accept();
+            startThread("Image", new Runnable() {
+                @Override
+                public void run() {
+                    serveImages(socket);
+                }
+            });
+        }
+    }
+
+    private static void startThread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Status connection: READY once "ready", then a PONG for every PING. Anything else ("Hello") is ignored
+    private void serveStatus(Socket socket) {
+        System.out.println("Status connection from " + socket.getRemoteSocketAddress());
+        try {
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), US_ASCII));
+            Thread.sleep(mReadyDelayMs);
+            out.write("READY\n".getBytes(US_ASCII));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.startsWith("PING ")) {
+                    continue;
+                }
+                mPings.incrementAndGet();
+                if (chance(mPongLossRate)) {
+                    continue;
+                }
+                if (mPongDelayMs > 0) {
+                    Thread.sleep(mPongDelayMs);
+                }
+                out.write(("PONG " + line.substring(5) + "\n").getBytes(US_ASCII));
+                mPongs.incrementAndGet();
+            }
+        } catch (IOException e) {
+            // Client went away (or we dropped it)
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(socket);
+        }
+        System.out.println("Status connection closed");
+    }
+
+    // Image connection. The protocol is picked from the first four bytes: the binary hello's magic, or otherwise the
+    // first image size of the text protocol
+    private void serveImages(Socket socket) {
+        System.out.println("Image connection from " + socket.getRemoteSocketAddress());
+        ScheduledExecutorService results = Executors.newSingleThreadScheduledExecutor();
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            Session session = new Session(socket, in, out, results);
+            session.run();
+        } catch (EOFException e) {
+            // Client closed the connection
+        } catch (IOException e) {
+            System.out.println("Image connection failed: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            results.shutdownNow();
+            closeQuietly(socket);
+        }
+        System.out.println("Image connection closed");
+    }
+
+    // One client on the image port
+    private final class Session {
+        private final Socket mSocket;
+        private final DataInputStream mIn;
+        private final DataOutputStream mOut;
+        private final ScheduledExecutorService mScheduler;
+
+        private boolean mBinary;
+        private boolean mPipelined;
+        private int mFrameCount;
+        private final byte[] mImage = new byte[64 * 1024];
+
+        // When the simulated inference of the last pipelined frame finishes (System.nanoTime()). Frames are processed
+        // one at a time, so a frame arriving while the previous one is still being processed waits for it
+        private long mBusyUntil;
+
+        Session(Socket socket, DataInputStream in, DataOutputStream out, ScheduledExecutorService results) {
+            mSocket = socket;
+            mIn = in;
+            mOut = out;
+            mScheduler = results;
+        }
+
+        void run() throws IOException, InterruptedException {
+            int first = mIn.readInt();
+            if (first == ServerProtocol.BINARY_MAGIC) {
+                int version = mIn.readInt();
+                int flags = mIn.readInt();
+                mBinary = true;
+                mPipelined = (flags & ServerProtocol.FLAG_PIPELINED) != 0;
+                System.out.println("Binary hello, version " + version + (mPipelined ? ", pipelined" : ""));
+                sendLabels();
+                first = -1;
+            } else {
+                System.out.println("Text protocol");
+            }
+
+            while (true) {
+                int frameId;
+                int length;
+                if (mPipelined) {
+                    frameId = mIn.readInt();
+                    length = mIn.readInt();
+                } else {
+                    length = first >= 0 ? first : mIn.readInt();
+                    first = -1;
+                    frameId = mFrameCount;
+                    sendSizeAck(length);
+                }
+                if (length < 0 || length > ServerProtocol.MAX_PAYLOAD_SIZE) {
+                    throw new IOException("Bad image length " + length);
+                }
+                readImage(length);
+                mFrameCount++;
+                mFrames.incrementAndGet();
+                mBytes.addAndGet(length);
+                if (!mPipelined) {
+                    sendReady();
+                }
+
+                if (chance(mDisconnectRate)) {
+                    disconnect();
+                    return;
+                }
+                if (chance(mDropRate)) {
+                    mDropped.incrementAndGet();
+                    continue;
+                }
+                if (mPipelined) {
+                    scheduleResult(frameId);
+                } else {
+                    // Like the real server, answer the frame before reading the next one
+                    Thread.sleep(processingNanos() / 1000000);
+                    sendResult(frameId);
+                    mResults.incrementAndGet();
+                }
+            }
+        }
+
+        // Reads the image, no faster than the configured uplink allows
+        private void readImage(int length) throws IOException, InterruptedException {
+            long start = System.nanoTime();
+            int read = 0;
+            while (read < length) {
+                int chunk = Math.min(Math.min(length - read, 4096), mImage.length);
+                mIn.readFully(mImage, 0, chunk);
+                read += chunk;
+                if (mUplinkKBps > 0) {
+                    long due = start + read * 1000000L / mUplinkKBps;
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                }
+            }
+        }
+
+        private long processingNanos() {
+            long jitter = mJitterMs > 0 ? (long) ((mRandom.nextDouble() * 2 - 1) * mJitterMs) : 0;
+            return Math.max(0, mLatencyMs + jitter) * 1000000;
+        }
+
+        // Pipelined frames keep arriving while earlier ones are processed, so their results are sent from mScheduler
+        private void scheduleResult(final int frameId) {
+            long now = System.nanoTime();
+            mBusyUntil = Math.max(now, mBusyUntil) + processingNanos();
+            mScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        sendResult(frameId);
+                        mResults.incrementAndGet();
+                    } catch (IOException e) {
+                        closeQuietly(mSocket);
+                    }
+                }
+            }, mBusyUntil - now, TimeUnit.NANOSECONDS);
+        }
+
+        private void sendSizeAck(int size) throws IOException {
+            synchronized (mOut) {
+                if (mBinary) {
+                    writeHeader(ServerProtocol.TYPE_SIZE_ACK, 4);
+                    mOut.writeInt(size);
+                } else {
+                    mOut.write(("SIZE\n" + size + "\n").getBytes(US_ASCII));
+                }
+                mOut.flush();
+            }
+        }
+
+        private void sendReady() throws IOException {
+            synchronized (mOut) {
+                if (mBinary) {
+                    writeHeader(ServerProtocol.TYPE_READY, 0);
+                } else {
+                    mOut.write("OK\n".getBytes(US_ASCII));
+                }
+                mOut.flush();
+            }
+        }
+
+        private void sendLabels() throws IOException {
+            int length = 2;
+            for (String label : LABELS) {
+                length += 2 + label.getBytes(US_ASCII).length;
+            }
+            synchronized (mOut) {
+                writeHeader(ServerProtocol.TYPE_LABELS, length);
+                mOut.writeShort(LABELS.length);
+                for (String label : LABELS) {
+                    byte[] bytes = label.getBytes(US_ASCII);
+                    mOut.writeShort(bytes.length);
+                    mOut.write(bytes);
+                }
+                mOut.flush();
+            }
+        }
+
+        // Made-up result: a few random detections, and a danger level that either is fixed or cycles slowly
+        // through clear, careful and dangerous
+        private void sendResult(int frameId) throws IOException {
+            int level = mDangerLevel >= 0 ? mDangerLevel : (frameId / 20) % 3;
+            int side = level == 0 ? 0 : 1 + mRandom.nextInt(ServerProtocol.SIDES.length - 1);
+            int count = mRandom.nextInt(4);
+            synchronized (mOut) {
+                if (mBinary) {
+                    writeHeader(ServerProtocol.TYPE_RESULT,
+                            ServerProtocol.RESULT_HEADER_SIZE + count * ServerProtocol.RESULT_RECORD_SIZE);
+                    mOut.writeInt(frameId);
+                    mOut.writeByte(level);
+                    mOut.writeByte(side);
+                    mOut.writeShort(count);
+                    for (int i = 0; i < count; i++) {
+                        mOut.writeShort(mRandom.nextInt(LABELS.length));
+                        mOut.writeShort(0);
+                        mOut.writeFloat(0.5f + mRandom.nextFloat() / 2);
+                        mOut.writeFloat(mRandom.nextFloat());
+                        mOut.writeFloat(mRandom.nextFloat());
+                    }
+                } else {
+                    StringBuilder result = new StringBuilder("RESULT\n").append(level).append('\n')
+                            .append(ServerProtocol.SIDES[side]).append('\n');
+                    for (int i = 0; i < count; i++) {
+                        result.append(LABELS[mRandom.nextInt(LABELS.length)]).append('$')
+                                .append(0.5f + mRandom.nextFloat() / 2).append('$')
+                                .append(mRandom.nextFloat()).append('$').append(mRandom.nextFloat()).append('\n');
+                    }
+                    mOut.write(result.append("END\n").toString().getBytes(US_ASCII));
+                }
+                mOut.flush();
+            }
+        }
+
+        private void writeHeader(byte type, int length) throws IOException {
+            mOut.writeByte(ServerProtocol.BINARY_VERSION);
+            mOut.writeByte(type);
+            mOut.writeShort(0);
+            mOut.writeInt(length);
+        }
+
+        // Injected fault: drops the image connection (saying CLOSED first unless --abrupt) and the status connection
+        private void disconnect() throws IOException {
+            mDisconnects.incrementAndGet();
+            System.out.println("Injecting disconnect after frame " + mFrameCount);
+            if (!mAbrupt) {
+                synchronized (mOut) {
+                    if (mBinary) {
+                        writeHeader(ServerProtocol.TYPE_CLOSED, 0);
+                    } else {
+                        mOut.write("CLOSED\n".getBytes(US_ASCII));
+                    }
+                    mOut.flush();
+                }
+            }
+            Socket status = mStatusSocket;
+            if (status != null) {
+                closeQuietly(status);
+            }
+        }
+    }
+
+    private void printStats() {
+        long lastFrames = 0;
+        long lastBytes = 0;
+        while (true) {
+            try {
+                Thread.sleep(STATS_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long frames = mFrames.get();
+            long bytes = mBytes.get();
+            System.out.printf("frames %d (%.1f/s, %.0f KB/s), results %d, dropped %d, disconnects %d, pongs %d/%d%n",
+                    frames, (frames - lastFrames) * 1000.0 / STATS_INTERVAL_MS,
+                    (bytes - lastBytes) / 1.024 / STATS_INTERVAL_MS, mResults.get(), mDropped.get(),
+                    mDisconnects.get(), mPongs.get(), mPings.get());
+            lastFrames = frames;
+            lastBytes = bytes;
+        }
+    }
+
+    private boolean chance(double probability) {
+        return probability > 0 && mRandom.nextDouble() < probability;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing left to do with it
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.sony.smarteyeglass.extension.cameranavigation.tools;
+
+import com.sony.smarteyeglass.extension.cameranavigation.tflite.ImagePreprocessor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+// JVM microbenchmark for the detector's input preprocessing (ImagePreprocessor) against the per-pixel
+// ByteBuffer.put() loop it replaced in TFLiteObjectDetectionAPIModel.recognizeImage(). Runs each variant over a
+// random 300x300 frame for a number of rounds after a warm-up and prints the median and best time per frame. Also
+// checks that old and new produce identical tensors. See tools/README for how to build and run it.
+public class PreprocessBenchmark {
+
+    private static final int INPUT_SIZE = 300;
+    private static final float IMAGE_MEAN = 128.0f;
+    private static final float IMAGE_STD = 128.0f;
+
+    private static final int WARMUP_ROUNDS = 2000;
+    private static final int ROUNDS = 2000;
+
+    public static void main(String[] args) {
+        int[] pixels = new int[INPUT_SIZE * INPUT_SIZE];
+        Random random = new Random(42);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+
+        for (boolean quantized : new boolean[] {true, false}) {
+            int bytesPerChannel = quantized ? 1 : 4;
+            ByteBuffer legacyTensor = ByteBuffer.allocateDirect(pixels.length * 3 * bytesPerChannel).order(ByteOrder.nativeOrder());
+            ByteBuffer tensor = ByteBuffer.allocateDirect(pixels.length * 3 * bytesPerChannel).order(ByteOrder.nativeOrder());
+            final ImagePreprocessor preprocessor = ImagePreprocessor.create(quantized, pixels.length, tensor);
+
+            legacyPreprocess(pixels, legacyTensor, quantized);
+            preprocessor.process(pixels);
+            legacyTensor.rewind();
+            tensor.rewind();
+            if (!legacyTensor.equals(tensor)) {
+                throw new AssertionError("Preprocessor output differs from the legacy loop (quantized=" + quantized + ")");
+            }
+
+            String type = quantized ? "quantized" : "float";
+            report(type + " per-pixel put (before)", time(pixels, legacyTensor, quantized, null));
+            report(type + " ImagePreprocessor (after)", time(pixels, tensor, quantized, preprocessor));
+        }
+    }
+
+    private static long[] time(int[] pixels, ByteBuffer tensor, boolean quantized, ImagePreprocessor preprocessor) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(pixels, tensor, quantized, preprocessor);
+        }
+        long[] nanos = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            run(pixels, tensor, quantized, preprocessor);
+            nanos[i] = System.nanoTime() - start;
+        }
+        return nanos;
+    }
+
+    private static void run(int[] pixels, ByteBuffer tensor, boolean quantized, ImagePreprocessor preprocessor) {
+        if (preprocessor != null) {
+            preprocessor.process(pixels);
+        } else {
+            legacyPreprocess(pixels, tensor, quantized);
+        }
+    }
+
+    private static void report(String name, long[] nanos) {
+        Arrays.sort(nanos);
+        System.out.printf("%-36s median %7.1f us/frame, best %7.1f us/frame%n",
+                name, nanos[nanos.length / 2] / 1000.0, nanos[0] / 1000.0);
+    }
+
+    // The loop recognizeImage() used to run, kept here as the baseline
+    private static void legacyPreprocess(int[] intValues, ByteBuffer imgData, boolean isModelQuantized) {
+        imgData.rewind();
+        for (int i = 0; i < INPUT_SIZE; ++i) {
+            for (int j = 0; j < INPUT_SIZE; ++j) {
+                int pixelValue = intValues[i * INPUT_SIZE + j];
+                if (isModelQuantized) {
+                    imgData.put((byte) ((pixelValue >> 16) & 0xFF));
+                    imgData.put((byte) ((pixelValue >> 8) & 0xFF));
+                    imgData.put((byte) (pixelValue & 0xFF));
+                } else {
+                    imgData.putFloat((((pixelValue >> 16) & 0xFF) - IMAGE_MEAN) / IMAGE_STD);
+                    imgData.putFloat((((pixelValue >> 8) & 0xFF) - IMAGE_MEAN) / IMAGE_STD);
+                    imgData.putFloat(((pixelValue & 0xFF) - IMAGE_MEAN) / IMAGE_STD);
+                }
+            }
+        }
+    }
+}
@@ -41,7 +41,9 @@ public class CameraEvent {
 
     private final long mTimestamp;
 
-    private final byte[] mData;
+    private byte[] mData;
+
+    private final FrameBuffer mBuffer;
 
     private final int mErrorStatus;
 
@@ -57,6 +59,24 @@ public class CameraEvent {
         this.mFrameId = frameId;
         this.mTimestamp = timeStamp;
         this.mData = mData;
+        this.mBuffer = null;
+        this.mErrorStatus = 0;
+    }
+
+    /**
+     * Creates an event object for camera operation backed by a pooled buffer.
+     * The event takes over the caller's reference to the buffer.
+     * @param index     identifies the type of data being passed, 0 for picture.
+     * @param frameId   value used to identify the order of the captured data.
+     * @param timeStamp milliseconds since the epoch (1970-01-01).
+     * @param buffer    buffer holding the picture data.
+     */
+    public CameraEvent(final int index, final int frameId, final long timeStamp, final FrameBuffer buffer) {
+        this.mIndex = index;
+        this.mFrameId = frameId;
+        this.mTimestamp = timeStamp;
+        this.mData = null;
+        this.mBuffer = buffer;
         this.mErrorStatus = 0;
     }
 
@@ -72,6 +92,7 @@ public class CameraEvent {
         this.mFrameId = frameId;
         this.mTimestamp = timeStamp;
         this.mData = null;
+        this.mBuffer = null;
         this.mErrorStatus = status;
     }
 
@@ -102,13 +123,73 @@ public class CameraEvent {
 
     /**
      * Retrieves the picture data.
+     * For events backed by a pooled buffer this makes a copy of exactly
+     * {@link #getDataLength()} bytes on first call; use {@link #getBuffer()}
+     * to read the data without copying.
      *
      * @return The picture data, or NULL on error.
      */
     public byte[] getData() {
+        if (mData == null && mBuffer != null) {
+            mData = mBuffer.toByteArray();
+        }
         return mData;
     }
 
+    /**
+     * Retrieves the buffer holding the picture data.
+     * The buffer is only valid until the
+     * {@link SmartEyeglassEventListener#onCameraReceived} callback returns;
+     * call {@link FrameBuffer#retain()} to keep it longer.
+     *
+     * @return The buffer, or NULL on error or if the event wraps an array.
+     */
+    public FrameBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    /**
+     * Retrieves the array holding the picture data without copying.
+     * The valid range is given by {@link #getDataOffset()} and
+     * {@link #getDataLength()}.
+     *
+     * @return The backing array, or NULL on error.
+     */
+    public byte[] getDataArray() {
+        return (mBuffer != null) ? mBuffer.getArray() : mData;
+    }
+
+    /**
+     * Retrieves the offset of the picture data in {@link #getDataArray()}.
+     *
+     * @return The offset.
+     */
+    public int getDataOffset() {
+        return (mBuffer != null) ? mBuffer.getOffset() : 0;
+    }
+
+    /**
+     * Retrieves the length of the picture data.
+     *
+     * @return The number of bytes, 0 on error.
+     */
+    public int getDataLength() {
+        if (mBuffer != null) {
+            return mBuffer.getLength();
+        }
+        return (mData != null) ? mData.length : 0;
+    }
+
+    /**
+     * Drops the event's reference to its pooled buffer. Called by
+     * {@link SmartEyeglassControlUtils} once the listener has returned.
+     */
+    void release() {
+        if (mBuffer != null) {
+            mBuffer.release();
+        }
+    }
+
     /**
      * Retrieves error information.
      *
@@ -120,9 +201,9 @@ public class CameraEvent {
 
     @Override
     public String toString() {
-        if (mData != null) {
+        if (mData != null || mBuffer != null) {
             return String.format("CameraEvent: Index:%d, frame:%d, timestamp:%d, datalength:%d",
-                    mIndex, mFrameId, mTimestamp, mData.length);
+                    mIndex, mFrameId, mTimestamp, getDataLength());
         }
         return String.format("CameraEvent: Index:%d, frame:%d, timestamp:%d, data is null",
                 mIndex, mFrameId, mTimestamp);
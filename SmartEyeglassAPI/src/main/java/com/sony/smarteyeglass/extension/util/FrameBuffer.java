@@ -0,0 +1,189 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference-counted byte buffer holding one camera frame.
+ * <p>
+ * Frame buffers are handed out by a {@link FrameBufferPool} and filled in
+ * place by the camera socket reader. The valid picture data is the range
+ * [{@link #getOffset()}, {@link #getOffset()} + {@link #getLength()}) of
+ * {@link #getArray()}; the backing array is usually larger than the frame.
+ * </p>
+ * <p>
+ * A buffer starts with one reference. Any component that keeps the buffer
+ * beyond the callback in which it received it must call {@link #retain()}
+ * and later {@link #release()}. When the last reference is released, the
+ * buffer goes back to its pool and its contents must no longer be read.
+ * </p>
+ */
+public final class FrameBuffer {
+
+    private final FrameBufferPool mPool;
+
+    private final AtomicInteger mRefCount = new AtomicInteger();
+
+    private byte[] mArray;
+
+    private int mOffset;
+
+    private int mLength;
+
+    /**
+     * Creates a buffer owned by the given pool.
+     *
+     * @param pool     The pool to return the buffer to, or NULL if unpooled.
+     * @param capacity The size of the backing array.
+     */
+    FrameBuffer(final FrameBufferPool pool, final int capacity) {
+        mPool = pool;
+        mArray = new byte[capacity];
+    }
+
+    /**
+     * Creates an unpooled buffer wrapping an existing array.
+     *
+     * @param data The picture data.
+     * @return A buffer with one reference covering the whole array.
+     */
+    public static FrameBuffer wrap(final byte[] data) {
+        FrameBuffer buffer = new FrameBuffer(null, 0);
+        buffer.mArray = data;
+        buffer.mLength = data.length;
+        buffer.mRefCount.set(1);
+        return buffer;
+    }
+
+    /**
+     * Retrieves the backing array. Only the range described by
+     * {@link #getOffset()} and {@link #getLength()} is valid.
+     *
+     * @return The backing array.
+     */
+    public byte[] getArray() {
+        return mArray;
+    }
+
+    /**
+     * Retrieves the offset of the picture data in the backing array.
+     *
+     * @return The offset.
+     */
+    public int getOffset() {
+        return mOffset;
+    }
+
+    /**
+     * Retrieves the length of the picture data.
+     *
+     * @return The number of valid bytes.
+     */
+    public int getLength() {
+        return mLength;
+    }
+
+    /**
+     * Retrieves the size of the backing array.
+     *
+     * @return The capacity in bytes.
+     */
+    public int getCapacity() {
+        return mArray.length;
+    }
+
+    /**
+     * Adds a reference to this buffer.
+     *
+     * @return This buffer.
+     */
+    public FrameBuffer retain() {
+        int count;
+        do {
+            count = mRefCount.get();
+            if (count <= 0) {
+                throw new IllegalStateException("buffer has already been released");
+            }
+        } while (!mRefCount.compareAndSet(count, count + 1));
+        return this;
+    }
+
+    /**
+     * Drops a reference to this buffer. The buffer is returned to its pool
+     * when the last reference is released.
+     */
+    public void release() {
+        int count = mRefCount.decrementAndGet();
+        if (count == 0) {
+            if (mPool != null) {
+                mPool.recycle(this);
+            }
+        } else if (count < 0) {
+            throw new IllegalStateException("buffer has already been released");
+        }
+    }
+
+    /**
+     * Retrieves the current number of references.
+     *
+     * @return The reference count.
+     */
+    public int getRefCount() {
+        return mRefCount.get();
+    }
+
+    /**
+     * Copies the picture data into a new array of exactly
+     * {@link #getLength()} bytes.
+     *
+     * @return The copy.
+     */
+    public byte[] toByteArray() {
+        byte[] copy = new byte[mLength];
+        System.arraycopy(mArray, mOffset, copy, 0, mLength);
+        return copy;
+    }
+
+    /**
+     * Prepares the buffer for a new frame of the given size, growing the
+     * backing array if needed.
+     */
+    void reset(final int length) {
+        if (mArray.length < length) {
+            mArray = new byte[length];
+        }
+        mOffset = 0;
+        mLength = length;
+        mRefCount.set(1);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of {@link FrameBuffer} objects used to receive camera
+ * frames without allocating a new array for every picture.
+ * <p>
+ * Buffers are grown on demand to fit the largest frame seen so far, so after
+ * a short warm-up a JPEG stream runs without allocations. At most
+ * {@code maxPooled} idle buffers are kept; any further released buffers are
+ * left to the garbage collector.
+ * </p>
+ */
+public final class FrameBufferPool {
+
+    /** Default number of idle buffers kept by the pool. */
+    public static final int DEFAULT_MAX_POOLED = 4;
+
+    /** Default initial capacity, large enough for a QVGA JPEG frame. */
+    public static final int DEFAULT_INITIAL_CAPACITY = 32 * 1024;
+
+    private final ConcurrentLinkedQueue<FrameBuffer> mFree =
+            new ConcurrentLinkedQueue<FrameBuffer>();
+
+    private final AtomicInteger mFreeCount = new AtomicInteger();
+
+    private final AtomicInteger mAllocated = new AtomicInteger();
+
+    private final int mMaxPooled;
+
+    private final int mInitialCapacity;
+
+    /**
+     * Creates a pool with default settings.
+     */
+    public FrameBufferPool() {
+        this(DEFAULT_MAX_POOLED, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxPooled       The maximum number of idle buffers to keep.
+     * @param initialCapacity The capacity of newly created buffers.
+     */
+    public FrameBufferPool(final int maxPooled, final int initialCapacity) {
+        mMaxPooled = maxPooled;
+        mInitialCapacity = initialCapacity;
+    }
+
+    /**
+     * Takes a buffer from the pool, or creates one if the pool is empty.
+     *
+     * @param length The number of bytes the frame needs.
+     * @return A buffer with one reference and room for {@code length} bytes.
+     */
+    public FrameBuffer acquire(final int length) {
+        FrameBuffer buffer = mFree.poll();
+        if (buffer != null) {
+            mFreeCount.decrementAndGet();
+        } else {
+            buffer = new FrameBuffer(this, Math.max(length, mInitialCapacity));
+            mAllocated.incrementAndGet();
+        }
+        buffer.reset(length);
+        return buffer;
+    }
+
+    /**
+     * Retrieves the number of buffers created by this pool so far.
+     *
+     * @return The number of allocations.
+     */
+    public int getAllocatedCount() {
+        return mAllocated.get();
+    }
+
+    /**
+     * Retrieves the number of idle buffers currently held by the pool.
+     *
+     * @return The number of idle buffers.
+     */
+    public int getFreeCount() {
+        return mFreeCount.get();
+    }
+
+    /** Returns a released buffer to the pool. */
+    void recycle(final FrameBuffer buffer) {
+        if (mFreeCount.incrementAndGet() <= mMaxPooled) {
+            mFree.offer(buffer);
+        } else {
+            mFreeCount.decrementAndGet();
+        }
+    }
+}
@@ -47,6 +47,7 @@ import android.graphics.Bitmap;
 import android.graphics.Bitmap.Config;
 import android.graphics.BitmapFactory;
 import android.graphics.Color;
+import android.graphics.Point;
 import android.graphics.PointF;
 import android.location.Location;
 import android.net.LocalServerSocket;
@@ -54,6 +55,7 @@ import android.net.LocalSocket;
 import android.net.LocalSocketAddress;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.Message;
 import android.util.DisplayMetrics;
 
@@ -256,6 +258,11 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
      */
     private int mRecodingMode = INVALID_CAMERA_MODE;
 
+    /**
+     * The present camera resolution.
+     */
+    private int mCameraResolution = INVALID_CAMERA_MODE;
+
     private final Handler mHandler;
     private final SmartEyeglassEventListener mGeneralEventListener;
     private int mSetApiVersion = 0;
@@ -470,6 +477,21 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         mSetApiVersion = version;
     }
 
+    /**
+     * Sets the thread on which
+     * {@link com.sony.smarteyeglass.extension.util.SmartEyeglassEventListener#onCameraReceived}
+     * is called. By default camera events are delivered on the thread that
+     * starts the camera, which is usually the main thread; use this to move
+     * picture decoding and other per-frame work to a background thread.
+     * Takes effect the next time the camera is started.
+     *
+     * @param looper The looper of the thread to deliver camera events on,
+     *            or NULL to use the thread that starts the camera.
+     */
+    public void setCameraEventLooper(final Looper looper) {
+        mCameraEventLooper = looper;
+    }
+
     /**
      * Displays an image resource on the SmartEyeglass screen.
      * Display can take some time for a large image.
@@ -773,6 +795,7 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         }
 
         mRecodingMode = recordingMode;
+        mCameraResolution = resolution;
 
         Intent intent = new Intent(SmartEyeglassControl.Intents.CONTROL_CAMERA_SET_MODE_INTENT);
         intent.putExtra(SmartEyeglassControl.Intents.EXTRA_CAMERA_JPEG_QUALITY, jpegQuality);
@@ -781,6 +804,42 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         sendToHostApp(intent);
     }
 
+    /**
+     * Retrieves the camera resolution set by the last call to
+     * {@link #setCameraMode(int, int, int)}.
+     *
+     * @return One of the CAMERA_RESOLUTION constants in
+     *         {@link com.sony.smarteyeglass.SmartEyeglassControl.Intents},
+     *         or -1 if the camera mode has not been set.
+     */
+    public int getCameraResolution() {
+        return mCameraResolution;
+    }
+
+    /**
+     * Retrieves the picture size, in pixels, that the camera produces at a
+     * given resolution.
+     *
+     * @param resolution One of the CAMERA_RESOLUTION constants in
+     *            {@link com.sony.smarteyeglass.SmartEyeglassControl.Intents}.
+     * @return The width and height of captured pictures, or NULL if the
+     *         resolution is not known.
+     */
+    public static Point getPictureSize(final int resolution) {
+        switch (resolution) {
+        case SmartEyeglassControl.Intents.CAMERA_RESOLUTION_3M:
+            return new Point(2048, 1536);
+        case SmartEyeglassControl.Intents.CAMERA_RESOLUTION_1M:
+            return new Point(1280, 720);
+        case SmartEyeglassControl.Intents.CAMERA_RESOLUTION_VGA:
+            return new Point(640, 480);
+        case SmartEyeglassControl.Intents.CAMERA_RESOLUTION_QVGA:
+            return new Point(320, 240);
+        default:
+            return null;
+        }
+    }
+
     /** */
     private List<Integer> getSupportedResolutions(int recordingMode) {
 
@@ -1493,6 +1552,10 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
     private final String mCameraSocketName[] = {"CameraImage"};
     /** */
     private LocalSocket mLocalRenderAnimationSocket;
+    /** Looper camera events are delivered on, or NULL for the caller's. */
+    private Looper mCameraEventLooper;
+    /** Recycles the buffers camera frames are read into. */
+    private final FrameBufferPool mFrameBufferPool = new FrameBufferPool();
 
     /** */
     private class CameraHandlerCallback implements Handler.Callback {
@@ -1501,7 +1564,12 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         public boolean handleMessage(Message msg) {
             CameraEvent cameraEvent = (CameraEvent) msg.obj;
             if (cameraEvent != null) {
-                mGeneralEventListener.onCameraReceived(cameraEvent);
+                try {
+                    mGeneralEventListener.onCameraReceived(cameraEvent);
+                } finally {
+                    // Listeners that keep the frame have retained the buffer
+                    cameraEvent.release();
+                }
             }
             return true;
         }
@@ -1528,7 +1596,10 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
                 }
 
                 // Start server listening thread
-                mServerThread[i] = new ServerThread(new Handler(new CameraHandlerCallback()), mLocalServerSocket[i], i);
+                Handler handler = (mCameraEventLooper != null)
+                        ? new Handler(mCameraEventLooper, new CameraHandlerCallback())
+                        : new Handler(new CameraHandlerCallback());
+                mServerThread[i] = new ServerThread(handler, mLocalServerSocket[i], i);
                 mServerThread[i].start();
             }
         } catch (IOException e) {
@@ -1623,17 +1694,21 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         long timestamp = inStream.readLong();
         int dataSize = inStream.readInt();
         if (dataSize > 0) {
-            byte[] image = new byte[dataSize];
+            // Read straight into a pooled buffer so the stream does not
+            // allocate a new array for every frame
+            FrameBuffer buffer = mFrameBufferPool.acquire(dataSize);
+            byte[] image = buffer.getArray();
 
             int bytesRead, totalBytes = 0;
-            while (((bytesRead = inStream.read(image, totalBytes, dataSize - totalBytes)) != -1)
-                    && (totalBytes < dataSize)) {
+            while ((totalBytes < dataSize)
+                    && ((bytesRead = inStream.read(image, totalBytes, dataSize - totalBytes)) != -1)) {
                 totalBytes += bytesRead;
             }
 
             if (totalBytes == dataSize) {
-                return new CameraEvent(index, frameId, timestamp, image);
+                return new CameraEvent(index, frameId, timestamp, buffer);
             } else {
+                buffer.release();
                 return null;
             }
         } else {